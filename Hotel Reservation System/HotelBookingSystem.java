@@ -1,8 +1,26 @@
 import java.awt.*;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.text.*;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.*;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
 import javax.swing.*;
+import javax.swing.border.TitledBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.table.*;
 
 public class HotelBookingSystem extends JFrame {
@@ -29,19 +47,399 @@ public class HotelBookingSystem extends JFrame {
         public String getFeatures() { return features; }
     }
     
-    class Room {
+    // Booked nights of one room as sorted, non-overlapping half-open
+    // [checkIn, checkOut) epoch-day intervals in two parallel arrays. A room
+    // can never hold overlapping stays, so only the last stay starting
+    // before a query's check-out can collide with it: one binary search.
+    static class StayIndex {
+        static final int OPEN_START = Integer.MIN_VALUE;
+        static final int OPEN_END = Integer.MAX_VALUE;
+        
+        private int[] starts = new int[4];
+        private int[] ends = new int[4];
+        private int size;
+        
+        // Index of the last stay starting before day, or -1
+        private int lastStartingBefore(int day) {
+            int lo = 0, hi = size - 1, found = -1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (starts[mid] < day) {
+                    found = mid;
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return found;
+        }
+        
+        boolean isFree(int checkIn, int checkOut) {
+            int i = lastStartingBefore(checkOut);
+            return i < 0 || ends[i] <= checkIn;
+        }
+        
+        // false for an empty or inverted stay as well as a clash
+        boolean add(int checkIn, int checkOut) {
+            if (checkIn >= checkOut || !isFree(checkIn, checkOut)) return false;
+            int at = lastStartingBefore(checkOut) + 1;
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+            }
+            System.arraycopy(starts, at, starts, at + 1, size - at);
+            System.arraycopy(ends, at, ends, at + 1, size - at);
+            starts[at] = checkIn;
+            ends[at] = checkOut;
+            size++;
+            return true;
+        }
+        
+        boolean remove(int checkIn, int checkOut) {
+            int i = lastStartingBefore(checkIn + 1);
+            if (i < 0 || starts[i] != checkIn || ends[i] != checkOut) return false;
+            System.arraycopy(starts, i + 1, starts, i, size - i - 1);
+            System.arraycopy(ends, i + 1, ends, i, size - i - 1);
+            size--;
+            return true;
+        }
+        
+        int size() { return size; }
+        
+        boolean sameStays(StayIndex other) {
+            return size == other.size
+                && Arrays.equals(starts, 0, size, other.starts, 0, size)
+                && Arrays.equals(ends, 0, size, other.ends, 0, size);
+        }
+    }
+    
+    // Set of room slots, roaring-style: slots are split into 65536-wide
+    // chunks, each stored as a sorted char array while it holds at most
+    // ARRAY_MAX slots and as a 1024-word bitmap once denser.
+    static class SlotBitmap {
+        private static final int ARRAY_MAX = 4096;
+        
+        private char[][] arrays = new char[0][];
+        private long[][] bitmaps = new long[0][];
+        private int[] counts = new int[0];
+        private int cardinality;
+        
+        private void ensureChunk(int chunk) {
+            if (chunk >= counts.length) {
+                arrays = Arrays.copyOf(arrays, chunk + 1);
+                bitmaps = Arrays.copyOf(bitmaps, chunk + 1);
+                counts = Arrays.copyOf(counts, chunk + 1);
+            }
+            if (arrays[chunk] == null && bitmaps[chunk] == null) {
+                arrays[chunk] = new char[4];
+            }
+        }
+        
+        boolean add(int slot) {
+            int chunk = slot >>> 16;
+            char low = (char) slot;
+            ensureChunk(chunk);
+            long[] bitmap = bitmaps[chunk];
+            if (bitmap != null) {
+                long mask = 1L << low;
+                if ((bitmap[low >>> 6] & mask) != 0) return false;
+                bitmap[low >>> 6] |= mask;
+            } else {
+                char[] array = arrays[chunk];
+                int count = counts[chunk];
+                int at = Arrays.binarySearch(array, 0, count, low);
+                if (at >= 0) return false;
+                at = -at - 1;
+                if (count == ARRAY_MAX) {
+                    bitmap = new long[1024];
+                    for (int i = 0; i < count; i++) bitmap[array[i] >>> 6] |= 1L << array[i];
+                    bitmap[low >>> 6] |= 1L << low;
+                    bitmaps[chunk] = bitmap;
+                    arrays[chunk] = null;
+                } else {
+                    if (count == array.length) {
+                        array = Arrays.copyOf(array, Math.min(ARRAY_MAX, count * 2));
+                        arrays[chunk] = array;
+                    }
+                    System.arraycopy(array, at, array, at + 1, count - at);
+                    array[at] = low;
+                }
+            }
+            counts[chunk]++;
+            cardinality++;
+            return true;
+        }
+        
+        boolean remove(int slot) {
+            int chunk = slot >>> 16;
+            if (chunk >= counts.length || counts[chunk] == 0) return false;
+            char low = (char) slot;
+            long[] bitmap = bitmaps[chunk];
+            if (bitmap != null) {
+                long mask = 1L << low;
+                if ((bitmap[low >>> 6] & mask) == 0) return false;
+                bitmap[low >>> 6] &= ~mask;
+                if (--counts[chunk] == ARRAY_MAX) {
+                    char[] array = new char[ARRAY_MAX];
+                    int n = 0;
+                    for (int w = 0; w < 1024; w++) {
+                        for (long bits = bitmap[w]; bits != 0; bits &= bits - 1) {
+                            array[n++] = (char) ((w << 6) | Long.numberOfTrailingZeros(bits));
+                        }
+                    }
+                    arrays[chunk] = array;
+                    bitmaps[chunk] = null;
+                }
+            } else {
+                char[] array = arrays[chunk];
+                int at = Arrays.binarySearch(array, 0, counts[chunk], low);
+                if (at < 0) return false;
+                System.arraycopy(array, at + 1, array, at, counts[chunk] - at - 1);
+                counts[chunk]--;
+            }
+            cardinality--;
+            return true;
+        }
+        
+        // ORs this set into a dense bitmap of slots (acc[slot >>> 6] bit slot)
+        void orInto(long[] acc) {
+            for (int chunk = 0; chunk < counts.length; chunk++) {
+                if (counts[chunk] == 0) continue;
+                int base = chunk << 10;
+                long[] bitmap = bitmaps[chunk];
+                if (bitmap != null) {
+                    int words = Math.min(1024, acc.length - base);
+                    for (int w = 0; w < words; w++) acc[base + w] |= bitmap[w];
+                } else {
+                    char[] array = arrays[chunk];
+                    int high = chunk << 16;
+                    for (int i = 0; i < counts[chunk]; i++) {
+                        int slot = high | array[i];
+                        acc[slot >>> 6] |= 1L << slot;
+                    }
+                }
+            }
+        }
+        
+        int cardinality() { return cardinality; }
+    }
+    
+    // Occupancy of every room of one RoomType, one SlotBitmap of occupied
+    // room slots per night (epoch day). Multi-night questions become
+    // word-wise ORs across nights instead of per-booking comparisons.
+    // Legacy stays without dates are kept in a separate set that counts as
+    // occupied on every night. Searches share a read lock; bookings take the
+    // write lock only for their own nights' bit flips.
+    static class TypeInventory {
+        final ArrayList<Room> rooms = new ArrayList<>();
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private SlotBitmap[] nights = new SlotBitmap[0];
+        private int firstDay;
+        private final SlotBitmap everyNight = new SlotBitmap();
+        
+        int addRoom(Room room) {
+            rooms.add(room);
+            return rooms.size() - 1;
+        }
+        
+        private SlotBitmap night(int day, boolean create) {
+            int index = day - firstDay;
+            if (index >= 0 && index < nights.length && nights[index] != null) return nights[index];
+            if (!create) return null;
+            if (nights.length == 0) {
+                firstDay = day;
+                nights = new SlotBitmap[64];
+                index = 0;
+            } else if (index < 0) {
+                int shift = Math.max(-index, nights.length);
+                SlotBitmap[] grown = new SlotBitmap[nights.length + shift];
+                System.arraycopy(nights, 0, grown, shift, nights.length);
+                nights = grown;
+                firstDay -= shift;
+                index += shift;
+            } else if (index >= nights.length) {
+                nights = Arrays.copyOf(nights, Math.max(index + 1, nights.length * 2));
+            }
+            return nights[index] = new SlotBitmap();
+        }
+        
+        void book(int slot, int checkIn, int checkOut) {
+            lock.writeLock().lock();
+            try {
+                if (checkIn == StayIndex.OPEN_START || checkOut == StayIndex.OPEN_END) {
+                    everyNight.add(slot);
+                    return;
+                }
+                for (int day = checkIn; day < checkOut; day++) {
+                    night(day, true).add(slot);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        
+        void release(int slot, int checkIn, int checkOut) {
+            lock.writeLock().lock();
+            try {
+                if (checkIn == StayIndex.OPEN_START || checkOut == StayIndex.OPEN_END) {
+                    everyNight.remove(slot);
+                    return;
+                }
+                for (int day = checkIn; day < checkOut; day++) {
+                    SlotBitmap night = night(day, false);
+                    if (night != null) night.remove(slot);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        
+        // Bit set for every room free on all nights in [checkIn, checkOut)
+        long[] freeMask(int checkIn, int checkOut) {
+            int n = rooms.size();
+            long[] mask = new long[(n + 63) >>> 6];
+            lock.readLock().lock();
+            try {
+                everyNight.orInto(mask);
+                for (int day = checkIn; day < checkOut; day++) {
+                    SlotBitmap night = night(day, false);
+                    if (night != null) night.orInto(mask);
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            for (int w = 0; w < mask.length; w++) mask[w] = ~mask[w];
+            if ((n & 63) != 0) mask[mask.length - 1] &= (1L << n) - 1;
+            return mask;
+        }
+        
+        ArrayList<Room> free(int checkIn, int checkOut) {
+            long[] mask = freeMask(checkIn, checkOut);
+            ArrayList<Room> free = new ArrayList<>();
+            for (int w = 0; w < mask.length; w++) {
+                for (long bits = mask[w]; bits != 0; bits &= bits - 1) {
+                    free.add(rooms.get((w << 6) | Long.numberOfTrailingZeros(bits)));
+                }
+            }
+            return free;
+        }
+        
+        int countFree(int checkIn, int checkOut) {
+            int free = 0;
+            for (long word : freeMask(checkIn, checkOut)) free += Long.bitCount(word);
+            return free;
+        }
+        
+        // Occupied rooms for each night in [fromDay, toDay)
+        int[] occupancy(int fromDay, int toDay) {
+            int[] occupied = new int[Math.max(0, toDay - fromDay)];
+            lock.readLock().lock();
+            try {
+                for (int day = fromDay; day < toDay; day++) {
+                    SlotBitmap night = night(day, false);
+                    occupied[day - fromDay] = everyNight.cardinality() + (night == null ? 0 : night.cardinality());
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            return occupied;
+        }
+    }
+    
+    // Rooms by number in an open-addressing table of two int arrays
+    // (number -> index into rooms) rather than a boxed HashMap entry per
+    // room, so 100k+ room properties load and look up without churn
+    static class RoomDirectory {
+        private static final int EMPTY = Integer.MIN_VALUE;
+        
+        final ArrayList<Room> rooms = new ArrayList<>();
+        private int[] numbers = emptyTable(64);
+        private int[] indexes = new int[64];
+        
+        private static int[] emptyTable(int capacity) {
+            int[] table = new int[capacity];
+            Arrays.fill(table, EMPTY);
+            return table;
+        }
+        
+        private static int slot(int number, int mask) {
+            int h = number * 0x9E3779B9;
+            return (h ^ (h >>> 16)) & mask;
+        }
+        
+        Room get(int number) {
+            int mask = numbers.length - 1;
+            for (int i = slot(number, mask); numbers[i] != EMPTY; i = (i + 1) & mask) {
+                if (numbers[i] == number) return rooms.get(indexes[i]);
+            }
+            return null;
+        }
+        
+        // false if a room with that number already exists
+        boolean add(Room room) {
+            if (get(room.number) != null) return false;
+            if ((rooms.size() + 1) * 2 > numbers.length) {
+                resize(numbers.length * 2);
+            }
+            rooms.add(room);
+            insert(room.number, rooms.size() - 1);
+            return true;
+        }
+        
+        private void insert(int number, int index) {
+            int mask = numbers.length - 1;
+            int i = slot(number, mask);
+            while (numbers[i] != EMPTY) i = (i + 1) & mask;
+            numbers[i] = number;
+            indexes[i] = index;
+        }
+        
+        private void resize(int capacity) {
+            numbers = emptyTable(capacity);
+            indexes = new int[capacity];
+            for (int i = 0; i < rooms.size(); i++) insert(rooms.get(i).number, i);
+        }
+        
+        int size() { return rooms.size(); }
+    }
+    
+    static int epochDay(Date date) {
+        return (int) date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay();
+    }
+    
+    static Date fromEpochDay(int day) {
+        return Date.from(LocalDate.ofEpochDay(day).atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+    
+    static class Room {
         int number;
         RoomType type;
-        boolean available;
+        int floor;
+        String attributes;
+        int slot;
+        StayIndex stays = new StayIndex();
         
         Room(int number, RoomType type) {
+            this(number, type, number / 100, "");
+        }
+        
+        Room(int number, RoomType type, int floor, String attributes) {
             this.number = number;
             this.type = type;
-            this.available = true;
+            this.floor = floor;
+            this.attributes = attributes;
+        }
+        
+        String getFeatures() {
+            return attributes.isEmpty() ? type.getFeatures() : type.getFeatures() + ", " + attributes;
+        }
+        
+        boolean isFree(Date checkIn, Date checkOut) {
+            return stays.isFree(epochDay(checkIn), epochDay(checkOut));
         }
     }
     
-    class Customer {
+    static class Customer {
         String name;
         String email;
         String phone;
@@ -55,7 +453,7 @@ public class HotelBookingSystem extends JFrame {
         }
     }
     
-    class Booking {
+    static class Booking {
         String id;
         Customer customer;
         Room room;
@@ -63,117 +461,858 @@ public class HotelBookingSystem extends JFrame {
         Date checkOut;
         int persons;
         double amount;
-        String status;
+        volatile String status;
         
-        Booking(Customer customer, Room room, Date checkIn, Date checkOut, int persons) {
-            this.id = "BK" + new Random().nextInt(10000);
+        // checkIn/checkOut are null for legacy records saved without dates,
+        // which block the room on every date
+        Booking(String id, Customer customer, Room room, Date checkIn, Date checkOut,
+                int persons, double amount, String status) {
+            this.id = id;
             this.customer = customer;
             this.room = room;
             this.checkIn = checkIn;
             this.checkOut = checkOut;
             this.persons = persons;
-            this.status = "Confirmed";
-            calculateAmount();
+            this.amount = amount;
+            this.status = status;
         }
         
-        void calculateAmount() {
-            long days = (checkOut.getTime() - checkIn.getTime()) / (1000 * 60 * 60 * 24);
-            double base = room.type.getPrice() * days;
-            this.amount = base + (base * 0.18);
-        }
+        int startDay() { return checkIn == null ? StayIndex.OPEN_START : epochDay(checkIn); }
+        int endDay() { return checkOut == null ? StayIndex.OPEN_END : epochDay(checkOut); }
         
         void cancel() {
             this.status = "Cancelled";
-            room.available = true;
         }
     }
     
+    // ==================== PRICING ====================
+    
+    // Per-night rates from the type's base price and three rule sets:
+    // occupancy of that night (a bitmap count from TypeInventory), lead
+    // time from today, and season plus weekend. The season table is built
+    // once per calendar day, so a quote is a few multiplications per night.
+    static class PricingEngine {
+        static final double GST = 0.18;
+        
+        // Occupancy below each threshold gets the matching factor; full
+        // houses get the last one
+        private static final double[] OCCUPANCY_STEPS = {0.40, 0.70, 0.85, 0.95};
+        private static final double[] OCCUPANCY_FACTORS = {0.90, 1.00, 1.15, 1.30, 1.50};
+        
+        // {fromMonth, fromDay, toMonth, toDay, percent}, inclusive, may wrap
+        // the year end; the first matching rule wins
+        private static final int[][] SEASONS = {
+            {12, 20, 1, 5, 140},   // year-end holidays
+            {10, 15, 11, 15, 125}, // festival season
+            {4, 1, 6, 15, 115},    // summer holidays
+            {7, 1, 9, 15, 85},     // monsoon
+        };
+        
+        private final double[] seasonFactors = new double[12 * 31];
+        
+        PricingEngine() {
+            Arrays.fill(seasonFactors, 1.0);
+            for (int i = SEASONS.length - 1; i >= 0; i--) {
+                int[] rule = SEASONS[i];
+                int from = (rule[0] - 1) * 31 + rule[1] - 1;
+                int to = (rule[2] - 1) * 31 + rule[3] - 1;
+                int end = (to + 1) % seasonFactors.length;
+                for (int d = from; d != end; d = (d + 1) % seasonFactors.length) {
+                    seasonFactors[d] = rule[4] / 100.0;
+                }
+            }
+        }
+        
+        int nightlyRate(RoomType type, int night, double occupancy, int today) {
+            double rate = type.getPrice();
+            
+            int step = 0;
+            while (step < OCCUPANCY_STEPS.length && occupancy >= OCCUPANCY_STEPS[step]) step++;
+            rate *= OCCUPANCY_FACTORS[step];
+            
+            int lead = night - today;
+            if (lead >= 60) {
+                rate *= 0.95;                           // early booking
+            } else if (lead <= 3) {
+                rate *= occupancy < 0.50 ? 0.85 : occupancy >= 0.85 ? 1.10 : 1.0;
+            }
+            
+            LocalDate date = LocalDate.ofEpochDay(night);
+            rate *= seasonFactors[(date.getMonthValue() - 1) * 31 + date.getDayOfMonth() - 1];
+            int dayOfWeek = Math.floorMod(night + 3, 7); // 0 = Monday
+            if (dayOfWeek == 4 || dayOfWeek == 5) {
+                rate *= 1.10;                           // Friday and Saturday nights
+            }
+            
+            rate = Math.max(type.getPrice() * 0.70, Math.min(type.getPrice() * 2.0, rate));
+            return (int) Math.round(rate / 10) * 10;
+        }
+        
+        // occupied[i] is the number of occupied rooms on night checkIn + i
+        RateQuote quote(RoomType type, int checkIn, int checkOut, int[] occupied, int rooms, int today) {
+            int[] nightly = new int[Math.max(0, checkOut - checkIn)];
+            for (int i = 0; i < nightly.length; i++) {
+                double occupancy = rooms == 0 ? 1.0 : occupied[i] / (double) rooms;
+                nightly[i] = nightlyRate(type, checkIn + i, occupancy, today);
+            }
+            return new RateQuote(nightly);
+        }
+    }
+    
+    static class RateQuote {
+        final int[] nightly;
+        final int subtotal;
+        
+        RateQuote(int[] nightly) {
+            this.nightly = nightly;
+            int sum = 0;
+            for (int rate : nightly) sum += rate;
+            this.subtotal = sum;
+        }
+        
+        int nights() { return nightly.length; }
+        int averageRate() { return nightly.length == 0 ? 0 : Math.round(subtotal / (float) nightly.length); }
+        double gst() { return subtotal * PricingEngine.GST; }
+        double total() { return subtotal + gst(); }
+    }
+    
     // ==================== DATABASE ====================
     
-    class HotelDB {
-        ArrayList<Room> rooms;
+    // Append-only log of booking events, one "payload*crc32" line each.
+    // Replay stops at the first record whose checksum fails - the tail of a
+    // write torn by a crash - and cuts the file back to the last good record.
+    static class EventLog implements Closeable {
+        private final File file;
+        private final boolean sync;
+        private FileOutputStream out;
+        private int records;
+        
+        EventLog(File file, boolean sync) {
+            this.file = file;
+            this.sync = sync;
+        }
+        
+        // Records set aside by an unfinished compaction come first
+        int replay(java.util.function.Consumer<String> apply) throws IOException {
+            records = 0;
+            replay(rotated(), apply);
+            replay(file, apply);
+            return records;
+        }
+        
+        private void replay(File file, java.util.function.Consumer<String> apply) throws IOException {
+            if (!file.exists()) return;
+            long good = 0;
+            byte[] buffer = new byte[1 << 16];
+            int filled = 0;
+            try (InputStream in = new FileInputStream(file)) {
+                scan:
+                for (int read; (read = in.read(buffer, filled, buffer.length - filled)) > 0; ) {
+                    filled += read;
+                    int start = 0;
+                    for (int i = 0; i < filled; i++) {
+                        if (buffer[i] != '\n') continue;
+                        String payload = verify(buffer, start, i);
+                        if (payload == null) break scan;
+                        apply.accept(payload);
+                        records++;
+                        good += i + 1 - start;
+                        start = i + 1;
+                    }
+                    // Carry the partial record over; grow for records longer than the buffer
+                    filled -= start;
+                    System.arraycopy(buffer, start, buffer, 0, filled);
+                    if (filled == buffer.length) buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+            }
+            if (good < file.length()) {
+                System.out.println("Discarded " + (file.length() - good) + " damaged bytes at the end of " + file);
+                try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                    raf.setLength(good);
+                }
+            }
+        }
+        
+        // Payload of the record in line[start, end), null if it is damaged
+        private static String verify(byte[] line, int start, int end) {
+            int star = end - 9;
+            if (star < start || line[star] != '*') return null;
+            CRC32 crc = new CRC32();
+            crc.update(line, start, star - start);
+            long expected = 0;
+            for (int i = star + 1; i < end; i++) {
+                int digit = Character.digit(line[i], 16);
+                if (digit < 0) return null;
+                expected = (expected << 4) | digit;
+            }
+            if (expected != crc.getValue()) return null;
+            return new String(line, start, star - start, StandardCharsets.UTF_8);
+        }
+        
+        void append(String payload) throws IOException {
+            if (out == null) {
+                out = new FileOutputStream(file, true);
+            }
+            byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            byte[] record = Arrays.copyOf(bytes, bytes.length + 10);
+            record[bytes.length] = '*';
+            long checksum = crc.getValue();
+            for (int i = 8; i >= 1; i--, checksum >>>= 4) {
+                record[bytes.length + i] = (byte) Character.forDigit((int) (checksum & 15), 16);
+            }
+            record[record.length - 1] = '\n';
+            out.write(record);
+            if (sync) out.getFD().sync();
+            records++;
+        }
+        
+        // Drops every record; called once a snapshot covers them
+        void reset() throws IOException {
+            close();
+            new FileOutputStream(file).close();
+            dropRotated();
+            records = 0;
+        }
+        
+        private File rotated() {
+            return new File(file.getPath() + ".old");
+        }
+        
+        boolean hasRotated() {
+            return rotated().exists();
+        }
+        
+        // Sets the records so far aside for a snapshot to cover and starts an
+        // empty log. Records left by a compaction that failed stay in front.
+        void rotate() throws IOException {
+            close();
+            File old = rotated();
+            if (!file.exists()) {
+                // nothing logged yet
+            } else if (!old.exists()) {
+                Files.move(file.toPath(), old.toPath());
+            } else {
+                try (FileOutputStream tail = new FileOutputStream(old, true)) {
+                    Files.copy(file.toPath(), tail);
+                }
+                new FileOutputStream(file).close();
+            }
+            records = 0;
+        }
+        
+        void dropRotated() throws IOException {
+            Files.deleteIfExists(rotated().toPath());
+        }
+        
+        int size() { return records; }
+        
+        public void close() throws IOException {
+            if (out != null) {
+                out.close();
+                out = null;
+            }
+        }
+    }
+    
+    // Time-ordered booking ids: 41 bits of milliseconds since 2024, 10 bits
+    // of node id and a 12-bit sequence, shown as "BK" plus 13 base-36 digits
+    // so ids sort by creation time as strings too. The clock and sequence
+    // live in one AtomicLong: taking an id is a CAS, and a burst beyond 4096
+    // per millisecond, or a clock stepping back, borrows the next millisecond
+    // rather than ever repeating an id.
+    static class BookingIdGenerator {
+        static final long EPOCH_MILLIS = 1704067200000L; // 2024-01-01T00:00Z
+        private static final int SEQUENCE_BITS = 12;
+        private static final int NODE_BITS = 10;
+        private static final int DIGITS = 13;
+        
+        private final long node;
+        private final AtomicLong last = new AtomicLong();
+        
+        BookingIdGenerator(int node) {
+            if (node < 0 || node >= 1 << NODE_BITS) {
+                throw new IllegalArgumentException("node id must be 0-" + ((1 << NODE_BITS) - 1));
+            }
+            this.node = node;
+        }
+        
+        String next() {
+            long now = (System.currentTimeMillis() - EPOCH_MILLIS) << SEQUENCE_BITS;
+            long prev, stamp;
+            do {
+                prev = last.get();
+                stamp = Math.max(prev + 1, now);
+            } while (!last.compareAndSet(prev, stamp));
+            return format((stamp >>> SEQUENCE_BITS) << (NODE_BITS + SEQUENCE_BITS)
+                          | node << SEQUENCE_BITS | (stamp & ((1 << SEQUENCE_BITS) - 1)));
+        }
+        
+        // Keeps ids ahead of ones already issued by this node, in case the
+        // clock is behind where it was before a restart
+        void observe(String id) {
+            long value = parse(id);
+            if (value < 0 || ((value >>> SEQUENCE_BITS) & ((1 << NODE_BITS) - 1)) != node) return;
+            long stamp = (value >>> (NODE_BITS + SEQUENCE_BITS)) << SEQUENCE_BITS
+                         | (value & ((1 << SEQUENCE_BITS) - 1));
+            last.accumulateAndGet(stamp, Math::max);
+        }
+        
+        static String format(long value) {
+            String digits = Long.toString(value, 36).toUpperCase(Locale.ROOT);
+            StringBuilder id = new StringBuilder(2 + DIGITS).append("BK");
+            for (int i = digits.length(); i < DIGITS; i++) id.append('0');
+            return id.append(digits).toString();
+        }
+        
+        // -1 for ids not issued by a generator, such as old "BK1234" ones
+        static long parse(String id) {
+            if (id.length() != 2 + DIGITS || !id.startsWith("BK")) return -1;
+            try {
+                return Long.parseLong(id.substring(2), 36);
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+        
+        static long creationMillis(String id) {
+            long value = parse(id);
+            return value < 0 ? -1 : (value >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH_MILLIS;
+        }
+    }
+    
+    // Bookings by id, plus secondary indexes for front-desk lookups. Emails
+    // match case-insensitively and phones on their digits alone. Bookings
+    // are never removed, only cancelled, so the indexes only grow.
+    static class BookingIndex {
+        private final HashMap<String, Booking> byId = new HashMap<>();
+        private final HashMap<String, ArrayList<Booking>> byEmail = new HashMap<>();
+        private final HashMap<String, ArrayList<Booking>> byPhone = new HashMap<>();
+        private final HashMap<Integer, ArrayList<Booking>> byRoom = new HashMap<>();
+        private final TreeMap<Integer, ArrayList<Booking>> byCheckIn = new TreeMap<>();
+        private final TreeMap<Integer, ArrayList<Booking>> byCheckOut = new TreeMap<>();
+        
+        static String emailKey(String email) {
+            return email.trim().toLowerCase(Locale.ROOT);
+        }
+        
+        static String phoneKey(String phone) {
+            StringBuilder digits = new StringBuilder(phone.length());
+            for (int i = 0; i < phone.length(); i++) {
+                if (Character.isDigit(phone.charAt(i))) digits.append(phone.charAt(i));
+            }
+            return digits.toString();
+        }
+        
+        private static <K> void put(Map<K, ArrayList<Booking>> index, K key, Booking booking) {
+            index.computeIfAbsent(key, k -> new ArrayList<>(2)).add(booking);
+        }
+        
+        void add(Booking booking) {
+            byId.put(booking.id, booking);
+            String email = emailKey(booking.customer.email);
+            if (!email.isEmpty()) put(byEmail, email, booking);
+            String phone = phoneKey(booking.customer.phone);
+            if (!phone.isEmpty()) put(byPhone, phone, booking);
+            put(byRoom, booking.room.number, booking);
+            if (booking.checkIn != null) {
+                put(byCheckIn, booking.startDay(), booking);
+                put(byCheckOut, booking.endDay(), booking);
+            }
+        }
+        
+        Booking get(String id) {
+            return byId.get(id.trim());
+        }
+        
+        List<Booking> byEmail(String email) {
+            return byEmail.getOrDefault(emailKey(email), new ArrayList<>());
+        }
+        
+        List<Booking> byPhone(String phone) {
+            return byPhone.getOrDefault(phoneKey(phone), new ArrayList<>());
+        }
+        
+        List<Booking> byRoom(int number) {
+            return byRoom.getOrDefault(number, new ArrayList<>());
+        }
+        
+        // Bookings checking in on any day of [fromDay, toDay)
+        List<Booking> arriving(int fromDay, int toDay) {
+            return collect(byCheckIn.subMap(fromDay, toDay));
+        }
+        
+        List<Booking> departing(int fromDay, int toDay) {
+            return collect(byCheckOut.subMap(fromDay, toDay));
+        }
+        
+        // Up to limit bookings in check-in (or check-out) day order, starting
+        // skip bookings into fromDay. Undated legacy bookings are not included.
+        List<Booking> pageByDay(boolean checkOut, int fromDay, int skip, int limit) {
+            ArrayList<Booking> page = new ArrayList<>(limit);
+            for (Map.Entry<Integer, ArrayList<Booking>> day : (checkOut ? byCheckOut : byCheckIn).tailMap(fromDay).entrySet()) {
+                ArrayList<Booking> bookings = day.getValue();
+                for (int i = day.getKey() == fromDay ? skip : 0; i < bookings.size() && page.size() < limit; i++) {
+                    page.add(bookings.get(i));
+                }
+                if (page.size() == limit) break;
+            }
+            return page;
+        }
+        
+        private static List<Booking> collect(SortedMap<Integer, ArrayList<Booking>> days) {
+            ArrayList<Booking> found = new ArrayList<>();
+            for (ArrayList<Booking> day : days.values()) found.addAll(day);
+            return found;
+        }
+        
+        int size() { return byId.size(); }
+    }
+    
+    // Commas and line breaks inside customer fields would split a record
+    static String escape(String value) {
+        return value.replace("%", "%25").replace(",", "%2C").replace("\n", "%0A").replace("\r", "%0D");
+    }
+    
+    static String unescape(String value) {
+        return value.replace("%0D", "\r").replace("%0A", "\n").replace("%2C", ",").replace("%25", "%");
+    }
+    
+    static class HotelDB {
+        RoomDirectory rooms;
         ArrayList<Booking> bookings;
-        String dataFile = "hotel_data.txt";
+        BookingIndex index = new BookingIndex();
+        BookingIdGenerator ids = new BookingIdGenerator(Integer.getInteger("hotel.nodeId", 0));
+        PricingEngine pricing = new PricingEngine();
+        EnumMap<RoomType, TypeInventory> inventory = new EnumMap<>(RoomType.class);
+        String roomsFile;
+        String dataFile;
+        EventLog events;
+        int snapshotEvery = Integer.getInteger("hotel.snapshotEvery", 10000);
+        // One snapshot write at a time, off the booking path
+        private final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "hotel-compactor");
+            t.setDaemon(true);
+            return t;
+        });
+        private Future<?> compaction;
         
         HotelDB() {
-            rooms = new ArrayList<>();
+            this(new File("."));
+        }
+        
+        // Snapshot and event log live in directory, as does rooms.csv unless
+        // -Dhotel.rooms names another file
+        HotelDB(File directory) {
+            roomsFile = System.getProperty("hotel.rooms", new File(directory, "rooms.csv").getPath());
+            dataFile = new File(directory, "hotel_data.txt").getPath();
+            events = new EventLog(new File(directory, "hotel_events.log"), Boolean.getBoolean("hotel.syncEvents"));
+            rooms = new RoomDirectory();
             bookings = new ArrayList<>();
             loadRooms();
             loadData();
         }
         
+        // number,type,floor,attributes - read line by line so large
+        // properties never hold the whole file; identical attribute strings
+        // are shared between rooms
         void loadRooms() {
-            rooms.add(new Room(101, RoomType.STANDARD));
-            rooms.add(new Room(102, RoomType.STANDARD));
-            rooms.add(new Room(103, RoomType.STANDARD));
-            rooms.add(new Room(201, RoomType.DELUXE));
-            rooms.add(new Room(202, RoomType.DELUXE));
-            rooms.add(new Room(301, RoomType.SUITE));
+            File file = new File(roomsFile);
+            if (file.exists()) {
+                HashMap<String, String> attributePool = new HashMap<>();
+                int skipped = 0;
+                try (BufferedReader reader = new BufferedReader(new FileReader(file), 1 << 16)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (line.isEmpty() || line.startsWith("#") || line.startsWith("number,")) continue;
+                        int typeAt = line.indexOf(',') + 1;
+                        int floorAt = line.indexOf(',', typeAt) + 1;
+                        int attributesAt = line.indexOf(',', floorAt) + 1;
+                        try {
+                            if (typeAt == 0 || floorAt == 0) throw new IllegalArgumentException(line);
+                            int number = Integer.parseInt(line, 0, typeAt - 1, 10);
+                            RoomType type = RoomType.valueOf(
+                                line.substring(typeAt, floorAt - 1).trim().toUpperCase(Locale.ROOT));
+                            int floor = Integer.parseInt(line, floorAt,
+                                attributesAt == 0 ? line.length() : attributesAt - 1, 10);
+                            String attributes = attributesAt == 0 ? ""
+                                : attributePool.computeIfAbsent(line.substring(attributesAt).trim(), a -> a);
+                            if (!addRoom(new Room(number, type, floor, attributes))) skipped++;
+                        } catch (IllegalArgumentException e) {
+                            skipped++;
+                        }
+                    }
+                } catch (IOException e) {
+                    System.out.println("Error loading rooms");
+                }
+                if (skipped > 0) {
+                    System.out.println("Skipped " + skipped + " invalid room lines in " + roomsFile);
+                }
+            }
+            if (rooms.size() == 0) {
+                addRoom(new Room(101, RoomType.STANDARD));
+                addRoom(new Room(102, RoomType.STANDARD));
+                addRoom(new Room(103, RoomType.STANDARD));
+                addRoom(new Room(201, RoomType.DELUXE));
+                addRoom(new Room(202, RoomType.DELUXE));
+                addRoom(new Room(301, RoomType.SUITE));
+            }
         }
         
-        ArrayList<Room> findAvailable(RoomType type, Date checkIn, Date checkOut) {
-            ArrayList<Room> available = new ArrayList<>();
-            for (Room room : rooms) {
-                if (room.type == type && room.available) {
-                    available.add(room);
-                }
+        boolean addRoom(Room room) {
+            if (!rooms.add(room)) return false;
+            room.slot = inventory.computeIfAbsent(room.type, t -> new TypeInventory()).addRoom(room);
+            return true;
+        }
+        
+        // Locking: each Room is its own lock stripe and guards its StayIndex,
+        // its bits in the type's night bitmaps and the ordering of its log
+        // records; the HotelDB monitor guards the booking list, the indexes
+        // and the log file. Always room first, then HotelDB.
+        
+        // The room's StayIndex decides conflicts; the type's night bitmaps
+        // mirror it for bulk queries. Callers hold the room's lock.
+        boolean reserve(Room room, int checkIn, int checkOut) {
+            if (!room.stays.add(checkIn, checkOut)) return false;
+            inventory.get(room.type).book(room.slot, checkIn, checkOut);
+            return true;
+        }
+        
+        void release(Room room, int checkIn, int checkOut) {
+            if (room.stays.remove(checkIn, checkOut)) {
+                inventory.get(room.type).release(room.slot, checkIn, checkOut);
             }
-            return available;
         }
         
+        // Rooms of the type free on every night of [checkIn, checkOut)
+        ArrayList<Room> findAvailable(RoomType type, Date checkIn, Date checkOut) {
+            TypeInventory rooms = inventory.get(type);
+            return rooms == null ? new ArrayList<>() : rooms.free(epochDay(checkIn), epochDay(checkOut));
+        }
+        
+        // Occupied rooms of the type per night, from checkIn up to checkOut
+        int[] occupancy(RoomType type, Date checkIn, Date checkOut) {
+            TypeInventory rooms = inventory.get(type);
+            int in = epochDay(checkIn);
+            int out = epochDay(checkOut);
+            return rooms == null ? new int[Math.max(0, out - in)] : rooms.occupancy(in, out);
+        }
+        
+        // Rates for each night of the stay at the type's current occupancy
+        RateQuote quote(RoomType type, Date checkIn, Date checkOut) {
+            int in = epochDay(checkIn);
+            int out = epochDay(checkOut);
+            return pricing.quote(type, in, out, occupancy(type, checkIn, checkOut), roomCount(type), epochDay(new Date()));
+        }
+        
+        int roomCount(RoomType type) {
+            TypeInventory rooms = inventory.get(type);
+            return rooms == null ? 0 : rooms.rooms.size();
+        }
+        
+        // null if the room was taken for any of those nights in the meantime
         Booking makeBooking(Customer customer, Room room, Date checkIn, Date checkOut, int persons) {
-            Booking booking = new Booking(customer, room, checkIn, checkOut, persons);
-            room.available = false;
-            bookings.add(booking);
-            saveData();
+            requireNights(checkIn, checkOut);
+            Booking booking = new Booking(ids.next(), customer, room, checkIn, checkOut, persons,
+                                          quote(room.type, checkIn, checkOut).total(), "Confirmed");
+            String event = "C," + booking.id + "," + room.number + "," + booking.startDay() + "," + booking.endDay()
+                           + "," + persons + "," + booking.amount + "," + customerFields(customer);
+            synchronized (room) {
+                if (!reserve(room, booking.startDay(), booking.endDay())) {
+                    return null;
+                }
+                synchronized (this) {
+                    bookings.add(booking);
+                    index.add(booking);
+                    record(event);
+                }
+            }
             return booking;
         }
         
+        private void requireNights(Date checkIn, Date checkOut) {
+            if (epochDay(checkIn) >= epochDay(checkOut)) {
+                throw new IllegalArgumentException("Check-out must be after check-in");
+            }
+        }
+        
+        // Books the first room of the type that is still free when its lock
+        // is taken. Agents start at random points of the free set so they
+        // rarely race for the same room.
+        Booking bookAny(Customer customer, RoomType type, Date checkIn, Date checkOut, int persons) {
+            requireNights(checkIn, checkOut);
+            TypeInventory rooms = inventory.get(type);
+            if (rooms == null) return null;
+            long[] free = rooms.freeMask(epochDay(checkIn), epochDay(checkOut));
+            if (free.length == 0) return null;
+            int start = ThreadLocalRandom.current().nextInt(free.length);
+            for (int i = 0; i < free.length; i++) {
+                int w = (start + i) % free.length;
+                for (long bits = free[w]; bits != 0; bits &= bits - 1) {
+                    Room room = rooms.rooms.get((w << 6) | Long.numberOfTrailingZeros(bits));
+                    Booking booking = makeBooking(customer, room, checkIn, checkOut, persons);
+                    if (booking != null) return booking;
+                }
+            }
+            return null;
+        }
+        
+        // Copy of bookings[offset, offset + limit) among the first end
+        // bookings, counted back from end when newestFirst. A caller paging
+        // newest first pins end at its first page, so bookings made while it
+        // pages do not shift its later pages.
+        synchronized List<Booking> page(List<Booking> bookings, int end, int offset, int limit, boolean newestFirst) {
+            int size = Math.min(end, bookings.size());
+            int from = Math.min(offset, size);
+            int to = Math.min(size, from + limit);
+            ArrayList<Booking> page = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                page.add(bookings.get(newestFirst ? size - 1 - i : i));
+            }
+            return page;
+        }
+        
+        synchronized List<Booking> pageByDay(boolean checkOut, int fromDay, int skip, int limit) {
+            return index.pageByDay(checkOut, fromDay, skip, limit);
+        }
+        
+        // Front-desk lookups for the EDT: taken under the monitor and copied,
+        // so later bookings on agent threads never change a list in use
+        synchronized Booking findBooking(String id) {
+            return index.get(id);
+        }
+        
+        synchronized List<Booking> findByEmail(String email) {
+            return new ArrayList<>(index.byEmail(email));
+        }
+        
+        synchronized List<Booking> findByPhone(String phone) {
+            return new ArrayList<>(index.byPhone(phone));
+        }
+        
+        synchronized List<Booking> findByRoom(int number) {
+            return new ArrayList<>(index.byRoom(number));
+        }
+        
+        synchronized List<Booking> findArriving(int day) {
+            return index.arriving(day, day + 1);
+        }
+        
+        synchronized List<Booking> findDeparting(int day) {
+            return index.departing(day, day + 1);
+        }
+        
+        synchronized int bookingCount() {
+            return bookings.size();
+        }
+        
         boolean cancelBooking(String bookingId) {
-            for (Booking booking : bookings) {
-                if (booking.id.equals(bookingId) && booking.status.equals("Confirmed")) {
-                    booking.cancel();
-                    saveData();
-                    return true;
+            Booking booking;
+            synchronized (this) {
+                booking = index.get(bookingId);
+            }
+            if (booking == null) return false;
+            synchronized (booking.room) {
+                if (!booking.status.equals("Confirmed")) {
+                    return false;
+                }
+                booking.cancel();
+                release(booking.room, booking.startDay(), booking.endDay());
+                synchronized (this) {
+                    record("X," + booking.id);
                 }
             }
-            return false;
+            return true;
+        }
+        
+        private String customerFields(Customer customer) {
+            return escape(customer.name) + "," + escape(customer.email) + ","
+                   + escape(customer.phone) + "," + escape(customer.id);
         }
         
-        void saveData() {
-            try (PrintWriter writer = new PrintWriter(dataFile)) {
+        // One appended record per change. Callers hold the monitor, so once
+        // snapshotEvery events have piled up only the log rotation and a copy
+        // of the booking list happen here; the snapshot is written by the
+        // compactor while bookings carry on into the fresh log.
+        void record(String event) {
+            try {
+                events.append(event);
+            } catch (IOException e) {
+                System.out.println("Error saving data");
+            }
+            if (events.size() >= snapshotEvery && (compaction == null || compaction.isDone())) {
+                try {
+                    events.rotate();
+                } catch (IOException e) {
+                    System.out.println("Error saving data");
+                    return;
+                }
+                ArrayList<Booking> covered = new ArrayList<>(bookings);
+                compaction = compactor.submit(() -> {
+                    if (writeSnapshot(covered)) {
+                        try {
+                            events.dropRotated();
+                        } catch (IOException e) {
+                            System.out.println("Error saving data");
+                        }
+                    }
+                });
+            }
+        }
+        
+        // Blocks until a snapshot in progress is on disk
+        void awaitCompaction() {
+            Future<?> running;
+            synchronized (this) {
+                running = compaction;
+            }
+            if (running == null) return;
+            try {
+                running.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                System.out.println("Error saving data");
+            }
+        }
+        
+        // Snapshot of everything, then an empty log. Only used while loading,
+        // before any compaction can be running.
+        synchronized void saveData() {
+            if (writeSnapshot(bookings)) {
+                try {
+                    events.reset();
+                } catch (IOException e) {
+                    System.out.println("Error saving data");
+                }
+            }
+        }
+        
+        // Snapshot: id,name,room,status,checkInEpochDay,checkOutEpochDay,persons,amount,
+        // email,phone,idProof - written aside and renamed over the old one.
+        // Statuses are read as they are now; a cancellation logged after the
+        // copy replays harmlessly over a snapshot that already shows it.
+        private boolean writeSnapshot(List<Booking> bookings) {
+            File snapshot = new File(dataFile);
+            File partial = new File(dataFile + ".tmp");
+            try (PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(partial), StandardCharsets.UTF_8)))) {
                 for (Booking booking : bookings) {
-                    writer.println(booking.id + "," + booking.customer.name + "," + 
-                                  booking.room.number + "," + booking.status);
+                    if (booking.checkIn == null) {
+                        writer.println(booking.id + "," + escape(booking.customer.name) + "," + 
+                                      booking.room.number + "," + booking.status);
+                        continue;
+                    }
+                    writer.println(booking.id + "," + escape(booking.customer.name) + "," + 
+                                  booking.room.number + "," + booking.status + "," +
+                                  epochDay(booking.checkIn) + "," + epochDay(booking.checkOut) + "," +
+                                  booking.persons + "," + booking.amount + "," +
+                                  escape(booking.customer.email) + "," + escape(booking.customer.phone) + "," +
+                                  escape(booking.customer.id));
+                }
+                if (writer.checkError()) throw new IOException("write failed");
+            } catch (IOException e) {
+                System.out.println("Error saving data");
+                return false;
+            }
+            try {
+                try {
+                    Files.move(partial.toPath(), snapshot.toPath(),
+                               StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(partial.toPath(), snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING);
                 }
+                return true;
             } catch (IOException e) {
                 System.out.println("Error saving data");
+                return false;
             }
         }
         
+        // Latest snapshot, then every event logged since it. Events already
+        // in the snapshot (a crash between rename and log reset) are skipped.
         void loadData() {
             File file = new File(dataFile);
-            if (!file.exists()) return;
-            
-            try (Scanner scanner = new Scanner(file)) {
-                while (scanner.hasNextLine()) {
-                    String[] parts = scanner.nextLine().split(",");
-                    if (parts.length == 4) {
-                        String status = parts[3];
-                        if (status.equals("Confirmed")) {
-                            int roomNo = Integer.parseInt(parts[2]);
-                            for (Room room : rooms) {
-                                if (room.number == roomNo) {
-                                    room.available = false;
-                                    break;
-                                }
+            if (file.exists()) {
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                        new FileInputStream(file), StandardCharsets.UTF_8))) {
+                    String line;
+                    int skipped = 0;
+                    while ((line = reader.readLine()) != null) {
+                        // -1 keeps trailing empty fields such as an optional phone or ID proof
+                        String[] parts = line.split(",", -1);
+                        if (parts.length != 4 && parts.length != 8 && parts.length != 11) {
+                            if (!line.isEmpty()) skipped++;
+                            continue;
+                        }
+                        try {
+                            Room room = rooms.get(Integer.parseInt(parts[2]));
+                            if (room == null) {
+                                skipped++;
+                                continue;
+                            }
+                            
+                            Customer customer = parts.length == 11
+                                ? new Customer(unescape(parts[1]), unescape(parts[8]), unescape(parts[9]), unescape(parts[10]))
+                                : new Customer(unescape(parts[1]), "", "", "");
+                            Booking booking = parts.length >= 8
+                                ? new Booking(parts[0], customer, room,
+                                              fromEpochDay(Integer.parseInt(parts[4])),
+                                              fromEpochDay(Integer.parseInt(parts[5])),
+                                              Integer.parseInt(parts[6]), Double.parseDouble(parts[7]), parts[3])
+                                : new Booking(parts[0], customer, room, null, null, 0, 0, parts[3]);
+                            if (booking.status.equals("Confirmed")) {
+                                reserve(room, booking.startDay(), booking.endDay());
                             }
+                            bookings.add(booking);
+                            index.add(booking);
+                            ids.observe(booking.id);
+                        } catch (NumberFormatException e) {
+                            skipped++;
                         }
                     }
+                    if (skipped > 0) {
+                        System.out.println("Skipped " + skipped + " invalid booking lines in " + dataFile);
+                    }
+                } catch (IOException e) {
+                    System.out.println("Error loading data");
                 }
+            }
+            
+            try {
+                events.replay(this::apply);
             } catch (IOException e) {
                 System.out.println("Error loading data");
             }
+            if (events.size() >= snapshotEvery || events.hasRotated()) {
+                saveData();
+            }
+        }
+        
+        // C,id,room,checkIn,checkOut,persons,amount,name,email,phone,idProof | X,id
+        private void apply(String event) {
+            String[] parts = event.split(",", -1);
+            if (parts[0].equals("X") && parts.length == 2) {
+                Booking booking = index.get(parts[1]);
+                if (booking != null && booking.status.equals("Confirmed")) {
+                    booking.cancel();
+                    release(booking.room, booking.startDay(), booking.endDay());
+                }
+            } else if (parts[0].equals("C") && parts.length == 11 && index.get(parts[1]) == null) {
+                Room room = rooms.get(Integer.parseInt(parts[2]));
+                if (room == null) return;
+                Customer customer = new Customer(unescape(parts[7]), unescape(parts[8]),
+                                                 unescape(parts[9]), unescape(parts[10]));
+                Booking booking = new Booking(parts[1], customer, room,
+                                              fromEpochDay(Integer.parseInt(parts[3])),
+                                              fromEpochDay(Integer.parseInt(parts[4])),
+                                              Integer.parseInt(parts[5]), Double.parseDouble(parts[6]), "Confirmed");
+                reserve(room, booking.startDay(), booking.endDay());
+                bookings.add(booking);
+                index.add(booking);
+                ids.observe(booking.id);
+            }
         }
     }
     
@@ -355,12 +1494,22 @@ public class HotelBookingSystem extends JFrame {
     private JSpinner personsSpin;
     private JTable roomsTable;
     private DefaultTableModel roomsModel;
+    private TitledBorder roomsBorder;
+    private SwingWorker<Integer, Object[]> searchWorker;
+    private JButton confirmBtn;
+    private boolean confirming;
+    private Room selectedRoom;
     
     private JTextField custName, custEmail, custPhone, custID;
     private JTextArea summary;
     
     private JTable bookingsTable;
-    private DefaultTableModel bookingsModel;
+    private BookingsTableModel bookingsModel;
+    private JComboBox<String> sortBox;
+    private JLabel pageLabel;
+    private JButton prevPageBtn, nextPageBtn;
+    private JComboBox<String> lookupBox;
+    private JTextField lookupField;
     
     // Colors
     private Color mainBg = new Color(240, 248, 255);  // Light Blue
@@ -413,6 +1562,7 @@ public class HotelBookingSystem extends JFrame {
         typeBox = new JComboBox<>(RoomType.values());
         typeBox.setBackground(panelBg);
         typeBox.setForeground(Color.BLACK);
+        typeBox.addActionListener(e -> criteriaChanged());
         topPanel.add(typeBox);
         
         JLabel checkInLabel = new JLabel("Check-in (dd-mm-yyyy):");
@@ -425,6 +1575,7 @@ public class HotelBookingSystem extends JFrame {
         inDate = new JTextField();
         inDate.setBackground(panelBg);
         inDate.setForeground(Color.BLACK);
+        inDate.getDocument().addDocumentListener(criteriaListener);
         inDatePanel.add(inDate, BorderLayout.CENTER);
         
         JButton inCalendarBtn = new JButton("📅");
@@ -446,6 +1597,7 @@ public class HotelBookingSystem extends JFrame {
         outDate = new JTextField();
         outDate.setBackground(panelBg);
         outDate.setForeground(Color.BLACK);
+        outDate.getDocument().addDocumentListener(criteriaListener);
         outDatePanel.add(outDate, BorderLayout.CENTER);
         
         JButton outCalendarBtn = new JButton("📅");
@@ -477,7 +1629,7 @@ public class HotelBookingSystem extends JFrame {
         topPanel.add(searchBtn);
         
         // Rooms table
-        String[] columns = {"Room No", "Type", "Price/Night", "Features"};
+        String[] columns = {"Room No", "Floor", "Type", "Price/Night", "Features"};
         roomsModel = new DefaultTableModel(columns, 0) {
             public boolean isCellEditable(int row, int col) { return false; }
         };
@@ -494,7 +1646,8 @@ public class HotelBookingSystem extends JFrame {
         roomsTable.getTableHeader().setForeground(Color.BLACK);
         
         JScrollPane scroll = new JScrollPane(roomsTable);
-        scroll.setBorder(BorderFactory.createTitledBorder("Available Rooms"));
+        roomsBorder = BorderFactory.createTitledBorder("Available Rooms");
+        scroll.setBorder(roomsBorder);
         scroll.getViewport().setBackground(panelBg);
         
         // Book button
@@ -581,11 +1734,12 @@ public class HotelBookingSystem extends JFrame {
         calcBtn.setFont(new Font("Arial", Font.BOLD, 12));
         calcBtn.addActionListener(e -> calculateTotal());
         
-        JButton confirmBtn = new JButton("Confirm Booking");
+        confirmBtn = new JButton("Confirm Booking");
         confirmBtn.setBackground(buttonBg);
         confirmBtn.setForeground(Color.WHITE);
         confirmBtn.setFont(new Font("Arial", Font.BOLD, 12));
         confirmBtn.addActionListener(e -> confirmBooking());
+        updateConfirmButton();
         
         btnPanel.add(calcBtn);
         btnPanel.add(confirmBtn);
@@ -603,10 +1757,7 @@ public class HotelBookingSystem extends JFrame {
         panel.setBackground(mainBg);
         
         // Bookings table
-        String[] columns = {"Booking ID", "Customer", "Room", "Check-in", "Check-out", "Amount", "Status"};
-        bookingsModel = new DefaultTableModel(columns, 0) {
-            public boolean isCellEditable(int row, int col) { return false; }
-        };
+        bookingsModel = new BookingsTableModel();
         
         bookingsTable = new JTable(bookingsModel);
         bookingsTable.setRowHeight(25);
@@ -625,6 +1776,26 @@ public class HotelBookingSystem extends JFrame {
         scroll.setBorder(BorderFactory.createTitledBorder("All Bookings"));
         scroll.getViewport().setBackground(panelBg);
         
+        // Front desk lookup
+        JPanel lookupPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 5));
+        lookupPanel.setBorder(BorderFactory.createTitledBorder("Find Bookings"));
+        lookupPanel.setBackground(panelBg);
+        
+        lookupBox = new JComboBox<>(new String[]{"Booking ID", "Email", "Phone", "Room",
+                                                  "Arrivals (dd-mm-yyyy)", "Departures (dd-mm-yyyy)"});
+        lookupField = new JTextField(15);
+        lookupField.addActionListener(e -> findBookings());
+        
+        JButton findBtn = new JButton("Find");
+        findBtn.setBackground(buttonBg);
+        findBtn.setForeground(Color.WHITE);
+        findBtn.setFont(new Font("Arial", Font.BOLD, 12));
+        findBtn.addActionListener(e -> findBookings());
+        
+        lookupPanel.add(lookupBox);
+        lookupPanel.add(lookupField);
+        lookupPanel.add(findBtn);
+        
         // Buttons panel
         JPanel btnPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 20, 10));
         btnPanel.setBackground(mainBg);
@@ -641,9 +1812,23 @@ public class HotelBookingSystem extends JFrame {
         cancelBtn.setFont(new Font("Arial", Font.BOLD, 12));
         cancelBtn.addActionListener(e -> cancelBooking());
         
+        sortBox = new JComboBox<>(new String[]{"Newest first", "Oldest first", "By check-in", "By check-out"});
+        sortBox.addActionListener(e -> loadBookings());
+        
+        prevPageBtn = new JButton("< Prev");
+        prevPageBtn.addActionListener(e -> { bookingsModel.previousPage(); updatePageControls(); });
+        nextPageBtn = new JButton("Next >");
+        nextPageBtn.addActionListener(e -> { bookingsModel.nextPage(); updatePageControls(); });
+        pageLabel = new JLabel();
+        
+        btnPanel.add(sortBox);
+        btnPanel.add(prevPageBtn);
+        btnPanel.add(pageLabel);
+        btnPanel.add(nextPageBtn);
         btnPanel.add(refreshBtn);
         btnPanel.add(cancelBtn);
         
+        panel.add(lookupPanel, BorderLayout.NORTH);
         panel.add(scroll, BorderLayout.CENTER);
         panel.add(btnPanel, BorderLayout.SOUTH);
         
@@ -675,6 +1860,156 @@ public class HotelBookingSystem extends JFrame {
         }
     }
     
+    // Bookings table that holds one page of Booking references and formats
+    // a row only when the table first paints it. Pages are fetched from the
+    // store by cursor: an offset for creation order, or (day, bookings
+    // already shown on that day) for the date indexes, so a late page costs
+    // the same as the first.
+    class BookingsTableModel extends AbstractTableModel {
+        static final int PAGE_SIZE = 200;
+        static final int NEWEST = 0, OLDEST = 1, CHECK_IN = 2, CHECK_OUT = 3;
+        
+        private final String[] columns = {"Booking ID", "Customer", "Room", "Check-in", "Check-out", "Amount", "Status"};
+        private final SimpleDateFormat sdf = new SimpleDateFormat("dd-MM-yyyy");
+        
+        private List<Booking> results;   // lookup results, or null for every booking
+        private int order = NEWEST;
+        private int cursorDay, cursorSkip;
+        private int pinnedSize;          // newest first: bookings.size() at the first page
+        private int count;               // bookings in the store when the page was read
+        private final ArrayDeque<int[]> previous = new ArrayDeque<>();
+        private List<Booking> rows = new ArrayList<>();
+        private Object[][] cells = new Object[0][];
+        private boolean hasNext;
+        private SwingWorker<List<Booking>, Void> loader;
+        
+        void showAll(int order) {
+            this.results = null;
+            this.order = order;
+            first();
+        }
+        
+        void showResults(List<Booking> results) {
+            this.results = results;
+            first();
+        }
+        
+        private void first() {
+            previous.clear();
+            load(Integer.MIN_VALUE, 0, true);
+        }
+        
+        // Pages are read on a worker: db.page and db.pageByDay wait on the
+        // HotelDB monitor, which booking agents hold while they commit. The
+        // current page stays up, with paging disabled, until the new one
+        // arrives; a newer request supersedes one still running.
+        private void load(int day, int skip, boolean pin) {
+            if (loader != null) loader.cancel(false);
+            List<Booking> source = results;
+            int sortOrder = order;
+            int pinned = pinnedSize;
+            loader = new SwingWorker<List<Booking>, Void>() {
+                private int size, total;
+                
+                protected List<Booking> doInBackground() {
+                    total = db.bookingCount();
+                    size = !pin ? pinned : source == null && sortOrder == NEWEST ? total : Integer.MAX_VALUE;
+                    if (source != null) {
+                        return db.page(source, Integer.MAX_VALUE, skip, PAGE_SIZE + 1, false);
+                    } else if (sortOrder == CHECK_IN || sortOrder == CHECK_OUT) {
+                        return db.pageByDay(sortOrder == CHECK_OUT, day, skip, PAGE_SIZE + 1);
+                    }
+                    return db.page(db.bookings, size, skip, PAGE_SIZE + 1, sortOrder == NEWEST);
+                }
+                
+                protected void done() {
+                    if (loader != this) return;
+                    loader = null;
+                    List<Booking> page;
+                    try {
+                        page = get();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    } catch (ExecutionException e) {
+                        updatePageControls();
+                        showError("Could not load bookings: " + e.getCause());
+                        return;
+                    }
+                    cursorDay = day;
+                    cursorSkip = skip;
+                    pinnedSize = size;
+                    count = total;
+                    hasNext = page.size() > PAGE_SIZE;
+                    rows = hasNext ? page.subList(0, PAGE_SIZE) : page;
+                    cells = new Object[rows.size()][];
+                    fireTableDataChanged();
+                    updatePageControls();
+                }
+            };
+            loader.execute();
+        }
+        
+        void nextPage() {
+            if (!hasNext) return;
+            previous.push(new int[]{cursorDay, cursorSkip});
+            if (results == null && (order == CHECK_IN || order == CHECK_OUT)) {
+                int lastDay = dayOf(rows.get(rows.size() - 1));
+                int onLastDay = 0;
+                for (Booking booking : rows) {
+                    if (dayOf(booking) == lastDay) onLastDay++;
+                }
+                load(lastDay, lastDay == cursorDay ? cursorSkip + onLastDay : onLastDay, false);
+            } else {
+                load(0, cursorSkip + PAGE_SIZE, false);
+            }
+        }
+        
+        void previousPage() {
+            if (previous.isEmpty()) return;
+            int[] cursor = previous.pop();
+            load(cursor[0], cursor[1], false);
+        }
+        
+        private int dayOf(Booking booking) {
+            return order == CHECK_OUT ? booking.endDay() : booking.startDay();
+        }
+        
+        boolean isLoading() { return loader != null; }
+        boolean hasNext() { return hasNext && loader == null; }
+        boolean hasPrevious() { return !previous.isEmpty() && loader == null; }
+        int pageNumber() { return previous.size() + 1; }
+        int total() { return results != null ? results.size() : count; }
+        
+        Booking getBooking(int row) { return rows.get(row); }
+        
+        // Drops the row's formatted cells after its booking changed
+        void refreshRow(int row) {
+            cells[row] = null;
+            fireTableRowsUpdated(row, row);
+        }
+        
+        public int getRowCount() { return rows.size(); }
+        public int getColumnCount() { return columns.length; }
+        public String getColumnName(int col) { return columns[col]; }
+        
+        public Object getValueAt(int row, int col) {
+            if (cells[row] == null) {
+                Booking booking = rows.get(row);
+                cells[row] = new Object[]{
+                    booking.id,
+                    booking.customer.name,
+                    booking.room.number,
+                    booking.checkIn == null ? "-" : sdf.format(booking.checkIn),
+                    booking.checkOut == null ? "-" : sdf.format(booking.checkOut),
+                    String.format("₹%.2f", booking.amount),
+                    booking.status
+                };
+            }
+            return cells[row][col];
+        }
+    }
+    
     // ==================== BUSINESS LOGIC ====================
     
     private void showCalendarForCheckIn() {
@@ -719,38 +2054,134 @@ public class HotelBookingSystem extends JFrame {
         }
     }
     
-    private void searchRooms() {
+    private static final int SEARCH_BATCH = 256;
+    
+    private final DocumentListener criteriaListener = new DocumentListener() {
+        public void insertUpdate(DocumentEvent e) { criteriaChanged(); }
+        public void removeUpdate(DocumentEvent e) { criteriaChanged(); }
+        public void changedUpdate(DocumentEvent e) { criteriaChanged(); }
+    };
+    
+    // Results no longer match what is on screen: stop any running search
+    // and clear them
+    private void criteriaChanged() {
+        updateConfirmButton();
+        if (roomsBorder == null) return;
+        cancelSearch();
+        roomsModel.setRowCount(0);
+        setRoomsTitle("Available Rooms");
+    }
+    
+    // Both dates parse and check-out falls after check-in, as the search requires
+    private boolean validStay() {
         try {
             SimpleDateFormat sdf = new SimpleDateFormat("dd-MM-yyyy");
-            Date checkIn = sdf.parse(inDate.getText());
-            Date checkOut = sdf.parse(outDate.getText());
+            return sdf.parse(outDate.getText()).after(sdf.parse(inDate.getText()));
+        } catch (ParseException e) {
+            return false;
+        }
+    }
+    
+    private void updateConfirmButton() {
+        if (confirmBtn == null) return;
+        confirmBtn.setEnabled(!confirming && validStay());
+    }
+    
+    private void cancelSearch() {
+        if (searchWorker != null) {
+            searchWorker.cancel(true);
+            searchWorker = null;
+        }
+    }
+    
+    private void setRoomsTitle(String title) {
+        roomsBorder.setTitle(title);
+        roomsTable.getParent().getParent().repaint();
+    }
+    
+    // Runs off the EDT; free rooms are published as they are read off the
+    // type's free mask and land in the table a batch at a time
+    private void searchRooms() {
+        cancelSearch();
+        roomsModel.setRowCount(0);
+        setRoomsTitle("Available Rooms (searching...)");
+        
+        String inText = inDate.getText();
+        String outText = outDate.getText();
+        RoomType type = (RoomType) typeBox.getSelectedItem();
+        
+        searchWorker = new SwingWorker<Integer, Object[]>() {
+            private int peak;
             
-            if (!checkOut.after(checkIn)) {
-                showError("Check-out must be after check-in");
-                return;
+            protected Integer doInBackground() throws ParseException {
+                SimpleDateFormat sdf = new SimpleDateFormat("dd-MM-yyyy");
+                Date checkIn = sdf.parse(inText);
+                Date checkOut = sdf.parse(outText);
+                if (!checkOut.after(checkIn)) {
+                    throw new IllegalArgumentException("Check-out must be after check-in");
+                }
+                
+                for (int occupied : db.occupancy(type, checkIn, checkOut)) {
+                    peak = Math.max(peak, occupied);
+                }
+                String rate = "₹" + db.quote(type, checkIn, checkOut).averageRate();
+                TypeInventory inventory = db.inventory.get(type);
+                if (inventory == null) return 0;
+                
+                long[] free = inventory.freeMask(epochDay(checkIn), epochDay(checkOut));
+                int found = 0;
+                for (int w = 0; w < free.length && !isCancelled(); w++) {
+                    for (long bits = free[w]; bits != 0; bits &= bits - 1) {
+                        Room room = inventory.rooms.get((w << 6) | Long.numberOfTrailingZeros(bits));
+                        publish(new Object[]{
+                            room.number,
+                            room.floor,
+                            room.type.getName(),
+                            rate,
+                            room.getFeatures()
+                        });
+                        found++;
+                    }
+                }
+                return found;
             }
             
-            RoomType type = (RoomType) typeBox.getSelectedItem();
-            ArrayList<Room> rooms = db.findAvailable(type, checkIn, checkOut);
-            
-            roomsModel.setRowCount(0);
-            
-            for (Room room : rooms) {
-                roomsModel.addRow(new Object[]{
-                    room.number,
-                    room.type.getName(),
-                    "₹" + room.type.getPrice(),
-                    room.type.getFeatures()
-                });
+            protected void process(List<Object[]> rows) {
+                if (isCancelled()) return;
+                for (int from = 0; from < rows.size(); from += SEARCH_BATCH) {
+                    int start = roomsModel.getRowCount();
+                    int to = Math.min(rows.size(), from + SEARCH_BATCH);
+                    for (int i = from; i < to; i++) {
+                        roomsModel.getDataVector().add(new Vector<>(Arrays.asList(rows.get(i))));
+                    }
+                    roomsModel.fireTableRowsInserted(start, roomsModel.getRowCount() - 1);
+                }
+                setRoomsTitle("Available Rooms (" + roomsModel.getRowCount() + " so far...)");
             }
             
-            if (roomsModel.getRowCount() == 0) {
-                showMessage("No rooms available", "Info");
+            protected void done() {
+                if (isCancelled()) return;
+                searchWorker = null;
+                try {
+                    int found = get();
+                    setRoomsTitle("Available Rooms (" + found + " of " + db.roomCount(type)
+                        + ", peak occupancy " + peak + ")");
+                    if (found == 0) {
+                        showMessage("No rooms available", "Info");
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    setRoomsTitle("Available Rooms");
+                    if (e.getCause() instanceof ParseException) {
+                        showError("Enter dates as dd-mm-yyyy or use calendar");
+                    } else {
+                        showError(e.getCause().getMessage());
+                    }
+                }
             }
-            
-        } catch (ParseException e) {
-            showError("Enter dates as dd-mm-yyyy or use calendar");
-        }
+        };
+        searchWorker.execute();
     }
     
     private void bookRoom() {
@@ -766,7 +2197,8 @@ public class HotelBookingSystem extends JFrame {
         custEmail.setText("");
         custPhone.setText("");
         custID.setText("");
-        summary.setText("Selected room: " + roomsTable.getValueAt(row, 0));
+        selectedRoom = db.rooms.get((Integer) roomsTable.getValueAt(row, 0));
+        summary.setText("Selected room: " + selectedRoom.number);
     }
     
     private void calculateTotal() {
@@ -779,24 +2211,42 @@ public class HotelBookingSystem extends JFrame {
             SimpleDateFormat sdf = new SimpleDateFormat("dd-MM-yyyy");
             Date checkIn = sdf.parse(inDate.getText());
             Date checkOut = sdf.parse(outDate.getText());
+            if (!checkOut.after(checkIn)) {
+                summary.setText("");
+                showError("Check-out must be after check-in");
+                return;
+            }
             
-            long days = (checkOut.getTime() - checkIn.getTime()) / (1000 * 60 * 60 * 24);
-            int price = RoomType.STANDARD.getPrice();
-            double total = (price * days) + ((price * days) * 0.18);
+            RoomType type = selectedRoom != null ? selectedRoom.type : (RoomType) typeBox.getSelectedItem();
+            RateQuote quote = db.quote(type, checkIn, checkOut);
+            
+            StringBuilder nights = new StringBuilder();
+            SimpleDateFormat night = new SimpleDateFormat("EEE dd-MM");
+            for (int i = 0; i < quote.nights() && i < 14; i++) {
+                nights.append(String.format("  %s: ₹%d%n", night.format(fromEpochDay(epochDay(checkIn) + i)),
+                                            quote.nightly[i]));
+            }
+            if (quote.nights() > 14) {
+                nights.append("  ...\n");
+            }
             
             summary.setText(String.format(
                 "=== BOOKING SUMMARY ===\n\n" +
+                "Room: %s\n" +
+                "Room type: %s\n" +
                 "Check-in: %s\n" +
                 "Check-out: %s\n" +
                 "Nights: %d\n" +
-                "Price per night: ₹%d\n" +
+                "%s" +
+                "Average per night: ₹%d\n" +
                 "GST (18%%): ₹%.2f\n" +
                 "Total Amount: ₹%.2f\n\n" +
                 "Customer: %s\n" +
                 "Email: %s\n" +
                 "Phone: %s",
-                sdf.format(checkIn), sdf.format(checkOut), days,
-                price, (price * days) * 0.18, total,
+                selectedRoom != null ? String.valueOf(selectedRoom.number) : "any free",
+                type.getName(), sdf.format(checkIn), sdf.format(checkOut), quote.nights(),
+                nights, quote.averageRate(), quote.gst(), quote.total(),
                 custName.getText(), custEmail.getText(), custPhone.getText()
             ));
             
@@ -806,80 +2256,148 @@ public class HotelBookingSystem extends JFrame {
     }
     
     private void confirmBooking() {
-        try {
-            if (custName.getText().isEmpty() || custEmail.getText().isEmpty()) {
-                showError("Enter customer details");
-                return;
+        if (custName.getText().isEmpty() || custEmail.getText().isEmpty()) {
+            showError("Enter customer details");
+            return;
+        }
+        
+        String inText = inDate.getText();
+        String outText = outDate.getText();
+        int persons = (Integer) personsSpin.getValue();
+        Room chosen = selectedRoom;
+        RoomType type = chosen != null ? chosen.type : (RoomType) typeBox.getSelectedItem();
+        Customer customer = new Customer(
+            custName.getText(),
+            custEmail.getText(),
+            custPhone.getText(),
+            custID.getText()
+        );
+        
+        // The booking may wait on room locks and appends to the event log,
+        // so it runs off the EDT with the button held until it finishes
+        confirming = true;
+        updateConfirmButton();
+        new SwingWorker<Booking, Void>() {
+            protected Booking doInBackground() throws ParseException {
+                SimpleDateFormat sdf = new SimpleDateFormat("dd-MM-yyyy");
+                Date checkIn = sdf.parse(inText);
+                Date checkOut = sdf.parse(outText);
+                if (!checkOut.after(checkIn)) {
+                    throw new IllegalArgumentException("Check-out must be after check-in");
+                }
+                // The room picked in the search, or another of its type if it
+                // was taken since
+                if (chosen != null) {
+                    Booking booking = db.makeBooking(customer, chosen, checkIn, checkOut, persons);
+                    if (booking != null) return booking;
+                }
+                return db.bookAny(customer, type, checkIn, checkOut, persons);
             }
             
-            SimpleDateFormat sdf = new SimpleDateFormat("dd-MM-yyyy");
-            Date checkIn = sdf.parse(inDate.getText());
-            Date checkOut = sdf.parse(outDate.getText());
-            int persons = (Integer) personsSpin.getValue();
-            
-            Customer customer = new Customer(
-                custName.getText(),
-                custEmail.getText(),
-                custPhone.getText(),
-                custID.getText()
-            );
-            
-            RoomType type = (RoomType) typeBox.getSelectedItem();
-            ArrayList<Room> rooms = db.findAvailable(type, checkIn, checkOut);
-            
-            if (rooms.isEmpty()) {
-                showError("Room no longer available");
-                return;
+            protected void done() {
+                confirming = false;
+                updateConfirmButton();
+                Booking booking;
+                try {
+                    booking = get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (ExecutionException e) {
+                    showError(e.getCause() instanceof IllegalArgumentException
+                              ? e.getCause().getMessage() : "Invalid dates");
+                    return;
+                }
+                if (booking == null) {
+                    showError("Room no longer available");
+                    return;
+                }
+                
+                SimpleDateFormat sdf = new SimpleDateFormat("dd-MM-yyyy");
+                String message = String.format(
+                    (chosen != null && booking.room != chosen
+                        ? "Room " + chosen.number + " was booked in the meantime; room "
+                          + booking.room.number + " was reserved instead.\n\n" : "") +
+                    "Booking Confirmed!\n\n" +
+                    "ID: %s\n" +
+                    "Customer: %s\n" +
+                    "Room: %d\n" +
+                    "Check-in: %s\n" +
+                    "Check-out: %s\n" +
+                    "Total: ₹%.2f\n\n" +
+                    "Email sent to: %s",
+                    booking.id, customer.name, booking.room.number,
+                    sdf.format(booking.checkIn), sdf.format(booking.checkOut),
+                    booking.amount, customer.email
+                );
+                
+                showMessage(message, "Success");
+                
+                custName.setText("");
+                custEmail.setText("");
+                custPhone.setText("");
+                custID.setText("");
+                summary.setText("");
+                selectedRoom = null;
+                
+                criteriaChanged();
+                loadBookings();
+                tabPane.setSelectedIndex(2);
             }
-            
-            Room room = rooms.get(0);
-            Booking booking = db.makeBooking(customer, room, checkIn, checkOut, persons);
-            
-            String message = String.format(
-                "Booking Confirmed!\n\n" +
-                "ID: %s\n" +
-                "Customer: %s\n" +
-                "Room: %d\n" +
-                "Check-in: %s\n" +
-                "Check-out: %s\n" +
-                "Total: ₹%.2f\n\n" +
-                "Email sent to: %s",
-                booking.id, customer.name, room.number,
-                sdf.format(checkIn), sdf.format(checkOut),
-                booking.amount, customer.email
-            );
-            
-            showMessage(message, "Success");
-            
-            custName.setText("");
-            custEmail.setText("");
-            custPhone.setText("");
-            custID.setText("");
-            summary.setText("");
-            
-            loadBookings();
-            tabPane.setSelectedIndex(2);
-            
-        } catch (ParseException e) {
-            showError("Invalid dates");
-        }
+        }.execute();
     }
     
     private void loadBookings() {
-        bookingsModel.setRowCount(0);
+        bookingsModel.showAll(sortBox.getSelectedIndex());
+        updatePageControls();
+    }
+    
+    private void showBookings(List<Booking> bookings) {
+        bookingsModel.showResults(bookings);
+        updatePageControls();
+    }
+    
+    private void updatePageControls() {
+        prevPageBtn.setEnabled(bookingsModel.hasPrevious());
+        nextPageBtn.setEnabled(bookingsModel.hasNext());
+        pageLabel.setText(bookingsModel.isLoading() ? "Loading page " + bookingsModel.pageNumber() + "..."
+                          : "Page " + bookingsModel.pageNumber() + " (" + bookingsModel.total() + " bookings)");
+    }
+    
+    private void findBookings() {
+        String query = lookupField.getText().trim();
+        if (query.isEmpty()) {
+            loadBookings();
+            return;
+        }
         
-        SimpleDateFormat sdf = new SimpleDateFormat("dd-MM-yyyy");
+        List<Booking> found;
+        try {
+            switch (lookupBox.getSelectedIndex()) {
+                case 0:
+                    Booking booking = db.findBooking(query);
+                    found = booking == null ? new ArrayList<>() : Collections.singletonList(booking);
+                    break;
+                case 1: found = db.findByEmail(query); break;
+                case 2: found = db.findByPhone(query); break;
+                case 3: found = db.findByRoom(Integer.parseInt(query)); break;
+                default:
+                    int day = epochDay(new SimpleDateFormat("dd-MM-yyyy").parse(query));
+                    found = lookupBox.getSelectedIndex() == 4
+                        ? db.findArriving(day)
+                        : db.findDeparting(day);
+            }
+        } catch (NumberFormatException e) {
+            showError("Enter a room number");
+            return;
+        } catch (ParseException e) {
+            showError("Enter the date as dd-mm-yyyy");
+            return;
+        }
         
-        for (Booking booking : db.bookings) {
-            bookingsModel.addRow(new Object[]{
-                booking.id,
-                booking.customer.name,
-                booking.room.number,
-                sdf.format(booking.checkIn),
-                sdf.format(booking.checkOut),
-                String.format("₹%.2f", booking.amount),
-                booking.status
-            });
+        showBookings(found);
+        if (found.isEmpty()) {
+            showMessage("No matching bookings", "Info");
         }
     }
     
@@ -890,8 +2408,9 @@ public class HotelBookingSystem extends JFrame {
             return;
         }
         
-        String bookingId = (String) bookingsTable.getValueAt(row, 0);
-        String status = (String) bookingsTable.getValueAt(row, 6);
+        Booking selected = bookingsModel.getBooking(row);
+        String bookingId = selected.id;
+        String status = selected.status;
         
         if (!status.equals("Confirmed")) {
             showError("Only confirmed bookings can be cancelled");
@@ -905,7 +2424,7 @@ public class HotelBookingSystem extends JFrame {
         if (confirm == JOptionPane.YES_OPTION) {
             if (db.cancelBooking(bookingId)) {
                 showMessage("Booking cancelled", "Success");
-                loadBookings();
+                bookingsModel.refreshRow(row);
             } else {
                 showError("Cancellation failed");
             }
@@ -920,7 +2439,136 @@ public class HotelBookingSystem extends JFrame {
         JOptionPane.showMessageDialog(this, message, title, JOptionPane.INFORMATION_MESSAGE);
     }
     
-    public static void main(String[] args) {
+    // ==================== STRESS TEST ====================
+    
+    // java HotelBookingSystem --stress [agents=16] [seconds=10] [roomsPerType=2000]
+    //
+    // Booking agents hammer one HotelDB (in a temp directory) with bookAny
+    // and the odd cancellation over a 60-day window, then every room's
+    // confirmed bookings are checked for overlaps and the night bitmaps
+    // against the per-room indexes.
+    static void runStress(int agents, int seconds, int roomsPerType) throws Exception {
+        File directory = Files.createTempDirectory("hotel-stress").toFile();
+        try {
+            runStress(directory, agents, seconds, roomsPerType);
+        } finally {
+            try (java.util.stream.Stream<java.nio.file.Path> files = Files.walk(directory.toPath())) {
+                files.sorted(Comparator.reverseOrder()).map(java.nio.file.Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+    
+    private static void runStress(File directory, int agents, int seconds, int roomsPerType) throws Exception {
+        // The rooms go in the directory's rooms.csv so the reload below
+        // rebuilds the same inventory
+        try (PrintWriter writer = new PrintWriter(new File(directory, "rooms.csv"))) {
+            for (RoomType type : RoomType.values()) {
+                for (int i = 0; i < roomsPerType; i++) {
+                    writer.println((100_000 * (type.ordinal() + 1) + i) + "," + type + "," + (type.ordinal() + 1) + ",");
+                }
+            }
+        }
+        HotelDB db = new HotelDB(directory);
+        int today = epochDay(new Date());
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        java.util.concurrent.atomic.LongAdder booked = new java.util.concurrent.atomic.LongAdder();
+        java.util.concurrent.atomic.LongAdder full = new java.util.concurrent.atomic.LongAdder();
+        java.util.concurrent.atomic.LongAdder cancelled = new java.util.concurrent.atomic.LongAdder();
+        
+        Thread[] threads = new Thread[agents];
+        for (int a = 0; a < agents; a++) {
+            // Phone and ID proof left empty, as the Book tab allows
+            Customer customer = new Customer("Agent " + a, "agent" + a + "@stress", "", "");
+            threads[a] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                ArrayList<String> mine = new ArrayList<>();
+                while (System.nanoTime() < deadline) {
+                    if (!mine.isEmpty() && random.nextInt(5) == 0) {
+                        if (db.cancelBooking(mine.remove(random.nextInt(mine.size())))) cancelled.increment();
+                        continue;
+                    }
+                    int in = today + random.nextInt(60);
+                    RoomType type = RoomType.values()[random.nextInt(RoomType.values().length)];
+                    Booking booking = db.bookAny(customer, type, fromEpochDay(in),
+                                                 fromEpochDay(in + 1 + random.nextInt(7)), 1);
+                    if (booking == null) {
+                        full.increment();
+                    } else {
+                        booked.increment();
+                        mine.add(booking.id);
+                    }
+                }
+            }, "agent-" + a);
+        }
+        long start = System.nanoTime();
+        for (Thread thread : threads) thread.start();
+        for (Thread thread : threads) thread.join();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        
+        HashMap<Room, ArrayList<Booking>> byRoom = new HashMap<>();
+        for (Booking booking : db.bookings) {
+            if (booking.status.equals("Confirmed")) {
+                byRoom.computeIfAbsent(booking.room, r -> new ArrayList<>()).add(booking);
+            }
+        }
+        int overlaps = 0;
+        for (ArrayList<Booking> stays : byRoom.values()) {
+            stays.sort(Comparator.comparingInt(Booking::startDay));
+            for (int i = 1; i < stays.size(); i++) {
+                if (stays.get(i).startDay() < stays.get(i - 1).endDay()) overlaps++;
+            }
+        }
+        int mismatches = 0;
+        for (TypeInventory inventory : db.inventory.values()) {
+            for (int day = today; day < today + 67; day++) {
+                long[] free = inventory.freeMask(day, day + 1);
+                for (Room room : inventory.rooms) {
+                    boolean bitmapFree = (free[room.slot >>> 6] & (1L << room.slot)) != 0;
+                    if (bitmapFree != room.stays.isFree(day, day + 1)) mismatches++;
+                }
+            }
+        }
+        
+        // Whatever the snapshot and log hold must rebuild the same state
+        db.awaitCompaction();
+        db.events.close();
+        HotelDB reloaded = new HotelDB(directory);
+        reloaded.events.close();
+        int lost = 0;
+        for (Booking booking : db.bookings) {
+            Booking copy = reloaded.findBooking(booking.id);
+            if (copy == null || !copy.status.equals(booking.status) || copy.room.number != booking.room.number
+                    || copy.startDay() != booking.startDay() || copy.endDay() != booking.endDay()
+                    || copy.amount != booking.amount || !copy.customer.email.equals(booking.customer.email)
+                    || !copy.customer.phone.equals(booking.customer.phone)
+                    || !copy.customer.id.equals(booking.customer.id)) {
+                lost++;
+            }
+        }
+        lost += Math.abs(reloaded.bookings.size() - db.bookings.size());
+        int staysDiffer = 0;
+        for (Room room : db.rooms.rooms) {
+            Room copy = reloaded.rooms.get(room.number);
+            if (copy == null || !copy.stays.sameStays(room.stays)) staysDiffer++;
+        }
+        
+        System.out.printf("%d agents, %d rooms, %.1f s%n", agents, db.rooms.size(), elapsed);
+        System.out.printf("bookings %,d (%,.0f/s), sold out %,d, cancellations %,d%n",
+            booked.sum(), booked.sum() / elapsed, full.sum(), cancelled.sum());
+        System.out.printf("overlapping stays %d, bitmap mismatches %d%n", overlaps, mismatches);
+        System.out.printf("after reload: bookings differing %d, rooms with differing stays %d%n", lost, staysDiffer);
+        if (overlaps > 0 || mismatches > 0 || lost > 0 || staysDiffer > 0) {
+            throw new IllegalStateException("stress check failed");
+        }
+    }
+    
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("--stress")) {
+            runStress(args.length > 1 ? Integer.parseInt(args[1]) : 16,
+                      args.length > 2 ? Integer.parseInt(args[2]) : 10,
+                      args.length > 3 ? Integer.parseInt(args[3]) : 2000);
+            return;
+        }
         SwingUtilities.invokeLater(() -> {
             try {
                 HotelBookingSystem app = new HotelBookingSystem();
@@ -0,0 +1,107 @@
+// CorrelationBenchmark.java - Rolling correlation matrix throughput check
+//
+// Drives a synthetic universe through PriceSimulator into a
+// TradingCore.CorrelationMatrix, serially and with parallel row blocks, and
+// reports the cost per tick, the tick rate it can sustain, and the largest
+// difference from a correlation matrix recomputed directly from the window.
+//
+//   java CorrelationBenchmark [symbols=1000] [window=600] [ticks=2000]
+import java.util.ArrayList;
+import java.util.List;
+
+public class CorrelationBenchmark {
+    private static final String[] SECTORS = { "Technology", "Automotive", "E-commerce", "Finance", "Healthcare" };
+
+    static List<TradingCore.Stock> universe(int symbols) {
+        List<TradingCore.Stock> stocks = new ArrayList<>();
+        for (int i = 0; i < symbols; i++) {
+            stocks.add(new TradingCore.Stock("S" + i, "Synthetic " + i, 50.0 + i % 400,
+                                             SECTORS[i % SECTORS.length], 1e9));
+        }
+        return stocks;
+    }
+
+    static double run(int symbols, int window, int ticks, boolean parallel, double[][] returns) {
+        List<TradingCore.Stock> stocks = universe(symbols);
+        TradingCore.PriceSimulator simulator =
+            new TradingCore.PriceSimulator(stocks, TradingCore.PriceModel.forName("gbm"), 42);
+        TradingCore.CorrelationMatrix matrix = new TradingCore.CorrelationMatrix(stocks, window);
+        matrix.setParallel(parallel);
+
+        // Fill the window first so every measured tick also evicts a row
+        for (int t = 0; t < window; t++) {
+            simulator.tick(matrix);
+            matrix.onTickComplete();
+        }
+        long start = System.nanoTime();
+        for (int t = 0; t < ticks; t++) {
+            if (returns != null) {
+                double[] before = prices(stocks);
+                simulator.tick(matrix);
+                double[] after = prices(stocks);
+                for (int i = 0; i < symbols; i++) {
+                    returns[t % window][i] = Math.log(after[i] / before[i]);
+                }
+            } else {
+                simulator.tick(matrix);
+            }
+            matrix.onTickComplete();
+        }
+        double micros = (System.nanoTime() - start) / 1e3 / ticks;
+
+        if (returns != null) {
+            System.out.printf("max |error| vs direct recompute: %.2e%n",
+                              maxError(matrix.getCorrelationMatrix(), returns));
+        }
+        return micros;
+    }
+
+    private static double[] prices(List<TradingCore.Stock> stocks) {
+        double[] prices = new double[stocks.size()];
+        for (int i = 0; i < prices.length; i++) {
+            prices[i] = stocks.get(i).getCurrentPrice();
+        }
+        return prices;
+    }
+
+    private static double maxError(double[][] incremental, double[][] window) {
+        int n = incremental.length;
+        int m = window.length;
+        double[] mean = new double[n];
+        for (double[] r : window) {
+            for (int i = 0; i < n; i++) mean[i] += r[i] / m;
+        }
+        double worst = 0;
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                double sij = 0, sii = 0, sjj = 0;
+                for (double[] r : window) {
+                    double di = r[i] - mean[i];
+                    double dj = r[j] - mean[j];
+                    sij += di * dj;
+                    sii += di * di;
+                    sjj += dj * dj;
+                }
+                worst = Math.max(worst, Math.abs(sij / Math.sqrt(sii * sjj) - incremental[i][j]));
+            }
+        }
+        return worst;
+    }
+
+    public static void main(String[] args) {
+        int symbols = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int window = args.length > 1 ? Integer.parseInt(args[1]) : 600;
+        int ticks = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+
+        System.out.printf("%,d symbols, window %d ticks, %d cores%n", symbols, window,
+                          Runtime.getRuntime().availableProcessors());
+        run(Math.min(symbols, 200), window, window, false, new double[window][Math.min(symbols, 200)]);
+
+        for (boolean parallel : new boolean[] { false, true }) {
+            run(symbols, window, ticks / 4, parallel, null);
+            double micros = run(symbols, window, ticks, parallel, null);
+            System.out.printf("%-9s %10.1f us/tick  %,10.0f ticks/s sustainable%n",
+                              parallel ? "parallel" : "serial", micros, 1e6 / micros);
+        }
+    }
+}
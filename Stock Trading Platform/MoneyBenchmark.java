@@ -0,0 +1,128 @@
+// MoneyBenchmark.java - Compares ledger representations for cash and prices
+//
+// Replays the same stream of random trades through three ledgers: double
+// dollars (the old representation), long minor units (TradingCore.Money) and
+// BigDecimal. Reports time per trade, bytes allocated per trade and how far
+// each ledger drifts from the exact result.
+//
+//   java MoneyBenchmark [trades=5000000] [rounds=5]
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.SplittableRandom;
+
+public class MoneyBenchmark {
+    private final long[] priceCents;
+    private final double[] priceDollars;
+    private final BigDecimal[] priceDecimal;
+    private final int[] quantity;
+    private final boolean[] buy;
+
+    MoneyBenchmark(int trades, long seed) {
+        priceCents = new long[trades];
+        priceDollars = new double[trades];
+        priceDecimal = new BigDecimal[trades];
+        quantity = new int[trades];
+        buy = new boolean[trades];
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < trades; i++) {
+            priceCents[i] = 1_00 + random.nextLong(1_000_00);
+            priceDollars[i] = priceCents[i] / 100.0;
+            priceDecimal[i] = BigDecimal.valueOf(priceCents[i], 2);
+            quantity[i] = 1 + random.nextInt(100);
+            buy[i] = random.nextBoolean();
+        }
+    }
+
+    double runDouble() {
+        double balance = 1_000_000.00;
+        for (int i = 0; i < quantity.length; i++) {
+            double amount = quantity[i] * priceDollars[i];
+            balance += buy[i] ? -amount : amount;
+        }
+        return balance;
+    }
+
+    long runFixedPoint() {
+        long balance = TradingCore.Money.of(1_000_000);
+        for (int i = 0; i < quantity.length; i++) {
+            long amount = TradingCore.Money.times(priceCents[i], quantity[i]);
+            balance += buy[i] ? -amount : amount;
+        }
+        return balance;
+    }
+
+    BigDecimal runBigDecimal() {
+        BigDecimal balance = new BigDecimal("1000000.00");
+        for (int i = 0; i < quantity.length; i++) {
+            BigDecimal amount = priceDecimal[i].multiply(BigDecimal.valueOf(quantity[i]));
+            balance = buy[i] ? balance.subtract(amount) : balance.add(amount);
+        }
+        return balance;
+    }
+
+    interface Ledger {
+        Object run();
+    }
+
+    static class Result {
+        long bestNanos = Long.MAX_VALUE;
+        long allocatedBytes;
+        Object value;
+    }
+
+    static Result measure(Ledger ledger, int rounds) {
+        Result result = new Result();
+        for (int warmup = 0; warmup < 3; warmup++) {
+            result.value = ledger.run();
+        }
+        for (int round = 0; round < rounds; round++) {
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+            result.value = ledger.run();
+            long elapsed = System.nanoTime() - start;
+            result.allocatedBytes = allocatedBytes() - allocatedBefore;
+            result.bestNanos = Math.min(result.bestNanos, elapsed);
+        }
+        return result;
+    }
+
+    // Per-thread allocation counter; HotSpot-specific, -1 elsewhere
+    static long allocatedBytes() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads)
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    public static void main(String[] args) {
+        int trades = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        MoneyBenchmark benchmark = new MoneyBenchmark(trades, 42);
+
+        Result doubles = measure(benchmark::runDouble, rounds);
+        Result fixed = measure(benchmark::runFixedPoint, rounds);
+        Result decimals = measure(benchmark::runBigDecimal, rounds);
+
+        long exact = (Long) fixed.value;
+        BigDecimal exactDecimal = BigDecimal.valueOf(exact, TradingCore.Money.SCALE);
+        double doubleBalance = (Double) doubles.value;
+        BigDecimal doubleError = new BigDecimal(doubleBalance).subtract(exactDecimal);
+
+        System.out.printf("%,d trades, best of %d rounds%n%n", trades, rounds);
+        System.out.printf("%-12s %10s %12s  %s%n", "ledger", "ns/trade", "bytes/trade", "final balance");
+        print("double", doubles, trades, String.format("%.2f (error %s)", doubleBalance,
+              doubleError.setScale(8, java.math.RoundingMode.HALF_UP).toPlainString()));
+        print("long minor", fixed, trades, TradingCore.Money.toPlainString(exact) + " (exact)");
+        print("BigDecimal", decimals, trades, ((BigDecimal) decimals.value).toPlainString()
+              + (((BigDecimal) decimals.value).compareTo(exactDecimal) == 0 ? " (exact)" : " (MISMATCH)"));
+    }
+
+    private static void print(String label, Result result, int trades, String balance) {
+        System.out.printf("%-12s %10.2f %12.2f  %s%n", label,
+            result.bestNanos / (double) trades,
+            result.allocatedBytes < 0 ? Double.NaN : result.allocatedBytes / (double) trades,
+            balance);
+    }
+}
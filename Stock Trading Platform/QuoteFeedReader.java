@@ -0,0 +1,298 @@
+// QuoteFeedReader.java - Zero-copy reader for the shared-memory quote feed
+//
+// Maps the file written by TradingCore.QuoteFeedWriter (MarketData.publishQuotes,
+// or the daemon's --quote-feed) read-only and reads quotes straight out of
+// the mapping under each record's seqlock: no sockets, no serialization, and
+// nothing allocated per read. Any number of reader processes can share it.
+//
+//   java QuoteFeedReader watch quotes.feed
+//   java QuoteFeedReader bench quotes.feed [--seconds 10] [--spawn-writer <tick-us>]
+//
+// The bench mode measures consistent-read latency and update visibility
+// (writer publish to reader observe, via System.nanoTime, which is one
+// system-wide monotonic clock on Linux). --spawn-writer starts a
+// StockTradingDaemon in a child JVM so the measurement crosses processes.
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class QuoteFeedReader implements Closeable {
+    private static final VarHandle LONGS = TradingCore.QuoteFeed.LONGS;
+    // A live writer holds a record odd for well under a microsecond; one
+    // still odd after this long belongs to a writer that died mid-publish
+    private static final long STALL_NANOS = TimeUnit.MILLISECONDS.toNanos(
+        Long.getLong("quotes.stallMs", 50L));
+    private static final int SPINS_PER_CHECK = 1024;
+
+    // Mutable holder so hot loops can read without allocating
+    public static final class Quote {
+        public String symbol;
+        public long priceMinor;
+        public double changePercent;
+        public long volume;
+        public long publishMillis;
+        public long publishNanos;
+        public long sequence;
+
+        @Override
+        public String toString() {
+            return String.format("%-6s %12s %+7.2f%% %,12d", symbol,
+                TradingCore.Money.format(priceMinor), changePercent, volume);
+        }
+    }
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final String[] symbols;
+    private final Map<String, Integer> indexBySymbol = new HashMap<>();
+    private long retries;
+    private static volatile long sink;
+
+    private QuoteFeedReader(FileChannel channel, MappedByteBuffer buffer) {
+        this.channel = channel;
+        this.buffer = buffer;
+        int count = buffer.getInt(TradingCore.QuoteFeed.H_RECORD_COUNT);
+        symbols = new String[count];
+        for (int i = 0; i < count; i++) {
+            int offset = TradingCore.QuoteFeed.recordOffset(i) + TradingCore.QuoteFeed.R_SYMBOL;
+            byte[] bytes = new byte[buffer.get(offset)];
+            buffer.get(offset + 1, bytes);
+            symbols[i] = new String(bytes, StandardCharsets.US_ASCII);
+            indexBySymbol.put(symbols[i], i);
+        }
+    }
+
+    // Fails if the writer has not finished laying out the file yet
+    public static QuoteFeedReader open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            if (channel.size() < TradingCore.QuoteFeed.HEADER_SIZE) {
+                throw new IOException("Quote feed not initialised: " + path);
+            }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                                                  TradingCore.QuoteFeed.HEADER_SIZE);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            if ((long) LONGS.getAcquire(header, TradingCore.QuoteFeed.H_MAGIC) != TradingCore.QuoteFeed.MAGIC) {
+                throw new IOException("Quote feed not initialised: " + path);
+            }
+            int version = header.getInt(TradingCore.QuoteFeed.H_VERSION);
+            int recordSize = header.getInt(TradingCore.QuoteFeed.H_RECORD_SIZE);
+            if (version != TradingCore.QuoteFeed.VERSION || recordSize != TradingCore.QuoteFeed.RECORD_SIZE) {
+                throw new IOException("Unsupported quote feed version " + version + ": " + path);
+            }
+            long size = TradingCore.QuoteFeed.fileSize(header.getInt(TradingCore.QuoteFeed.H_RECORD_COUNT));
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return new QuoteFeedReader(channel, buffer);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int size() { return symbols.length; }
+    public String getSymbol(int index) { return symbols[index]; }
+    public int indexOf(String symbol) { return indexBySymbol.getOrDefault(symbol, -1); }
+
+    // Even when stable, odd while the writer is mid-update; changes on every publish
+    public long getSequence(int index) {
+        return (long) LONGS.getAcquire(buffer, TradingCore.QuoteFeed.recordOffset(index));
+    }
+
+    // Completed market ticks since the writer started
+    public long getPublishCount() {
+        return (long) LONGS.getAcquire(buffer, TradingCore.QuoteFeed.H_PUBLISH_COUNT);
+    }
+
+    public boolean isClosed() {
+        return (long) LONGS.getAcquire(buffer, TradingCore.QuoteFeed.H_CLOSED) != 0;
+    }
+
+    // Seqlock read: retry until the record was not written during the copy.
+    // Throws IllegalStateException instead of spinning forever when the
+    // record stays mid-update past STALL_NANOS or the feed has been closed
+    // under it; the clock and the closed flag are only checked every
+    // SPINS_PER_CHECK retries so the common path stays a plain spin.
+    public Quote read(int index, Quote into) {
+        int offset = TradingCore.QuoteFeed.recordOffset(index);
+        long deadline = 0;
+        for (int spins = 0; ; spins++) {
+            long before = (long) LONGS.getAcquire(buffer, offset + TradingCore.QuoteFeed.R_SEQ);
+            if ((before & 1) == 0) {
+                long price = buffer.getLong(offset + TradingCore.QuoteFeed.R_PRICE);
+                double change = buffer.getDouble(offset + TradingCore.QuoteFeed.R_CHANGE);
+                long volume = buffer.getLong(offset + TradingCore.QuoteFeed.R_VOLUME);
+                long publishNanos = buffer.getLong(offset + TradingCore.QuoteFeed.R_PUBLISH_NANOS);
+                long publishMillis = buffer.getLong(offset + TradingCore.QuoteFeed.R_PUBLISH_MILLIS);
+                VarHandle.loadLoadFence();
+                long after = (long) LONGS.getOpaque(buffer, offset + TradingCore.QuoteFeed.R_SEQ);
+                if (before == after) {
+                    into.symbol = symbols[index];
+                    into.priceMinor = price;
+                    into.changePercent = change;
+                    into.volume = volume;
+                    into.publishNanos = publishNanos;
+                    into.publishMillis = publishMillis;
+                    into.sequence = before;
+                    return into;
+                }
+            }
+            retries++;
+            if (spins % SPINS_PER_CHECK == SPINS_PER_CHECK - 1) {
+                if (isClosed()) {
+                    throw new IllegalStateException("Quote feed closed mid-update: " + symbols[index]);
+                }
+                long now = System.nanoTime();
+                if (deadline == 0) {
+                    deadline = now + STALL_NANOS;
+                } else if (now - deadline > 0) {
+                    throw new IllegalStateException("Quote feed stalled mid-update: " + symbols[index]);
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    public Quote read(String symbol, Quote into) {
+        int index = indexOf(symbol);
+        if (index < 0) throw new IllegalArgumentException("Unknown symbol: " + symbol);
+        return read(index, into);
+    }
+
+    // Reads that had to be repeated because the writer was mid-update
+    public long getRetries() { return retries; }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // ==================== TOOLS ====================
+
+    private static void watch(QuoteFeedReader reader) throws InterruptedException {
+        Quote quote = new Quote();
+        while (!reader.isClosed()) {
+            System.out.printf("%n%,d ticks published%n", reader.getPublishCount());
+            for (int i = 0; i < reader.size(); i++) {
+                try {
+                    System.out.println(reader.read(i, quote));
+                } catch (IllegalStateException e) {
+                    System.out.printf("%-6s unavailable (%s)%n", reader.getSymbol(i), e.getMessage());
+                }
+            }
+            Thread.sleep(1000);
+        }
+        System.out.println("Writer closed the feed");
+    }
+
+    private static void bench(QuoteFeedReader reader, int seconds) {
+        Quote quote = new Quote();
+        int n = reader.size();
+
+        // Read latency: sweep every record, timed in batches so the clock
+        // itself does not dominate
+        long reads = 0;
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(Math.max(1, seconds / 2));
+        TradingLoadGenerator.LatencyHistogram batchLatency = new TradingLoadGenerator.LatencyHistogram();
+        long retriesBefore = reader.getRetries();
+        while (System.nanoTime() < end) {
+            long start = System.nanoTime();
+            for (int k = 0; k < 1024; k++) {
+                sink += reader.read(k % n, quote).priceMinor;
+            }
+            batchLatency.record((System.nanoTime() - start) / 1024);
+            reads += 1024;
+        }
+        System.out.printf("Read:       %,d reads, p50 %d ns  p99 %d ns per read, %,d retries%n",
+            reads, batchLatency.percentile(50), batchLatency.percentile(99),
+            reader.getRetries() - retriesBefore);
+
+        // Visibility: poll sequence numbers and time each new version from
+        // the writer's publish stamp
+        long[] seen = new long[n];
+        for (int i = 0; i < n; i++) seen[i] = reader.getSequence(i);
+        TradingLoadGenerator.LatencyHistogram visibility = new TradingLoadGenerator.LatencyHistogram();
+        long ticksBefore = reader.getPublishCount();
+        end = System.nanoTime() + TimeUnit.SECONDS.toNanos(Math.max(1, seconds - seconds / 2));
+        while (System.nanoTime() < end) {
+            for (int i = 0; i < n; i++) {
+                long seq = reader.getSequence(i);
+                if (seq != seen[i] && (seq & 1) == 0) {
+                    reader.read(i, quote);
+                    visibility.record(System.nanoTime() - quote.publishNanos);
+                    seen[i] = quote.sequence;
+                }
+            }
+            Thread.onSpinWait();
+        }
+        System.out.printf("Visibility: %,d updates over %,d ticks, p50 %.1f us  p99 %.1f us  p99.9 %.1f us  max %.1f us%n",
+            visibility.count(), reader.getPublishCount() - ticksBefore,
+            visibility.percentile(50) / 1e3, visibility.percentile(99) / 1e3,
+            visibility.percentile(99.9) / 1e3, visibility.max() / 1e3);
+    }
+
+    private static QuoteFeedReader awaitFeed(Path path, long timeoutMs) throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (true) {
+            try {
+                return open(path);
+            } catch (IOException e) {
+                if (System.currentTimeMillis() > deadline) throw e;
+                Thread.sleep(50);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.err.println("Usage: QuoteFeedReader watch|bench <file> [--seconds 10] [--spawn-writer <tick-us>]");
+            System.exit(2);
+        }
+        Path path = Paths.get(args[1]);
+        int seconds = 10;
+        String writerTickMicros = null;
+        for (int i = 2; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--seconds": seconds = Integer.parseInt(args[i + 1]); break;
+                case "--spawn-writer": writerTickMicros = args[i + 1]; break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+            }
+        }
+
+        Process writer = null;
+        if (writerTickMicros != null) {
+            Files.deleteIfExists(path);
+            String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+            writer = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                    "StockTradingDaemon", "--tick-us", writerTickMicros, "--status-s", "0",
+                    "--user", "quote_feed_bench", "--quote-feed", path.toString())
+                .inheritIO().start();
+        }
+        try (QuoteFeedReader reader = awaitFeed(path, 10_000)) {
+            System.out.printf("Mapped %s: %d symbols%n", path, reader.size());
+            if (args[0].equals("watch")) {
+                watch(reader);
+            } else {
+                bench(reader, seconds);
+            }
+        } finally {
+            if (writer != null) {
+                writer.destroy();
+                writer.waitFor(5, TimeUnit.SECONDS);
+            }
+        }
+    }
+}
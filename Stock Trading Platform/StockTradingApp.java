@@ -2,344 +2,536 @@
 import java.awt.*;
 import java.awt.event.*;
 import java.io.*;
-import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
 import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.DefaultTableModel;
 
 public class StockTradingApp extends JFrame {
-    // Inner classes
-    static class Stock {
-        private String symbol;
-        private String name;
-        private double currentPrice;
-        private double dailyChange;
-        private int volume;
-        private String sector;
-        private double marketCap;
-        private java.util.List<Double> priceHistory;
-        
-        public Stock(String symbol, String name, double price, String sector, 
-                     double marketCap) {
-            this.symbol = symbol;
-            this.name = name;
-            this.currentPrice = price;
-            this.sector = sector;
-            this.marketCap = marketCap;
-            this.dailyChange = 0.0;
-            this.volume = 1000000;
-            this.priceHistory = new ArrayList<>();
-            this.priceHistory.add(price);
-        }
-        
-        public void updatePrice() {
-            double volatility = 0.015;
-            double changePercent = (Math.random() * 2 * volatility) - volatility;
-            this.currentPrice *= (1 + changePercent);
-            this.currentPrice = Math.round(this.currentPrice * 100.0) / 100.0;
-            this.dailyChange = Math.round(changePercent * 10000.0) / 100.0;
-            this.volume = (int)(Math.random() * 1000000) + 10000;
-            priceHistory.add(this.currentPrice);
-        }
-        
-        public String getSymbol() { return symbol; }
-        public String getName() { return name; }
-        public double getCurrentPrice() { return currentPrice; }
-        public double getDailyChange() { return dailyChange; }
-        public int getVolume() { return volume; }
-        public String getSector() { return sector; }
-        public double getMarketCap() { return marketCap; }
-        public java.util.List<Double> getPriceHistory() { return priceHistory; }
-        
-        public String getFormattedPrice() {
-            return String.format("$%.2f", currentPrice);
-        }
-        
-        public String getFormattedChange() {
-            return String.format("%+.2f%%", dailyChange);
-        }
-        
-        public String getFormattedVolume() {
-            return String.format("%,d", volume);
+    // Transaction history table that reads straight from the portfolio's
+    // transaction list. Rows are formatted in getValueAt, so only the rows
+    // JTable actually paints are ever formatted. The filter is kept as an
+    // index of matching transactions that only scans trades it has not seen.
+    static class TransactionTableModel extends AbstractTableModel {
+        private static final String[] COLUMNS = {"#", "Time", "Type", "Symbol", "Qty", "Price", "Total"};
+        
+        private final TradingCore.Portfolio portfolio;
+        private int[] matches = new int[1024];
+        private int matchCount;
+        private int scanned;
+        private String filter = "";
+        
+        TransactionTableModel(TradingCore.Portfolio portfolio) {
+            this.portfolio = portfolio;
+        }
+        
+        // Called on every UI refresh; costs nothing when no trade happened
+        public void refresh() {
+            int total = portfolio.getTransactionCount();
+            if (total == scanned) return;
+            
+            int before = matchCount;
+            for (int i = scanned; i < total; i++) {
+                if (accepts(portfolio.getTransaction(i))) {
+                    if (matchCount == matches.length) {
+                        matches = Arrays.copyOf(matches, matchCount * 2);
+                    }
+                    matches[matchCount++] = i;
+                }
+            }
+            scanned = total;
+            
+            // Newest first, so new matches are inserted at the top
+            if (matchCount > before) {
+                fireTableRowsInserted(0, matchCount - before - 1);
+            }
+        }
+        
+        public void setFilter(String filter) {
+            this.filter = filter.trim().toUpperCase();
+            matchCount = 0;
+            scanned = 0;
+            refresh();
+            fireTableDataChanged();
+        }
+        
+        private boolean accepts(TradingCore.Transaction t) {
+            return filter.isEmpty()
+                || t.getSymbol().contains(filter)
+                || t.getType().equals(filter);
+        }
+        
+        @Override
+        public int getRowCount() { return matchCount; }
+        
+        @Override
+        public int getColumnCount() { return COLUMNS.length; }
+        
+        @Override
+        public String getColumnName(int column) { return COLUMNS[column]; }
+        
+        @Override
+        public Object getValueAt(int row, int column) {
+            TradingCore.Transaction t = portfolio.getTransaction(matches[matchCount - 1 - row]);
+            switch (column) {
+                case 0: return String.valueOf(t.getId());
+                case 1: return t.getFormattedTime();
+                case 2: return t.getType();
+                case 3: return t.getSymbol();
+                case 4: return String.valueOf(t.getQuantity());
+                case 5: return TradingCore.Money.format(t.getPrice());
+                default: return TradingCore.Money.format(t.getTotalAmount());
+            }
         }
     }
 
-    static class Transaction {
-        private int id;
-        private String symbol;
-        private String type;
-        private int quantity;
-        private double price;
-        private Date timestamp;
-        private double totalAmount;
-        
-        public Transaction(int id, String symbol, String type, int quantity, 
-                          double price, double totalAmount) {
-            this.id = id;
-            this.symbol = symbol;
-            this.type = type;
-            this.quantity = quantity;
-            this.price = price;
-            this.timestamp = new Date();
-            this.totalAmount = totalAmount;
-        }
-        
-        public String getFormattedString() {
-            SimpleDateFormat sdf = new SimpleDateFormat("HH:mm:ss");
-            return String.format("%s - %s %d %s @ $%.2f ($%.2f)",
-                               sdf.format(timestamp), type, quantity, 
-                               symbol, price, totalAmount);
-        }
-        
-        public String getSymbol() { return symbol; }
-        public String getType() { return type; }
-        public int getQuantity() { return quantity; }
-        public double getTotalAmount() { return totalAmount; }
+    // GUI Components
+    private TradingCore.MarketData marketData;
+    private TradingCore.Portfolio portfolio;
+    
+    private JTable marketTable;
+    private DefaultTableModel marketTableModel;
+    private DefaultListModel<String> gainersModel;
+    private DefaultListModel<String> losersModel;
+    private DefaultListModel<String> activeModel;
+    private JTable holdingsTable;
+    private DefaultTableModel holdingsTableModel;
+    private JTable transactionsTable;
+    private TransactionTableModel transactionsModel;
+    private JLabel balanceLabel;
+    private JLabel portfolioValueLabel;
+    private JLabel marketStatusLabel;
+    private JLabel tickStatusLabel;
+    private FrameClock frameClock;
+    private JTextField symbolField;
+    private JTextField quantityField;
+    private JLabel stockInfoLabel;
+    
+    private String[] marketColumns = {"Symbol", "Name", "Price", "Change%", "Volume", "Sector"};
+    private String[] holdingsColumns = {"Symbol", "Quantity", "Price", "Value"};
+    private static final int MOVERS_SHOWN = 5;
+    private static final int MIN_FRAME_MS = 1000 / 30;
+    private static final int MAX_FRAME_MS = 500;
+    private static final int IDLE_FRAME_MS = 250;
+    
+    public StockTradingApp() {
+        marketData = new TradingCore.MarketData();
+        portfolio = TradingCore.Portfolio.loadFromFile("default_user");
+        portfolio.setPersistence(TradingCore.PersistenceWorker.fromSystemProperties());
+        portfolio.setAdmission(TradingCore.AdmissionControl.fromSystemProperties());
+        
+        initializeUI();
+        // -Dmarket.quoteFeed=<path> shares live quotes with other local JVMs
+        String quoteFeed = System.getProperty("market.quoteFeed");
+        if (quoteFeed != null) {
+            try {
+                marketData.publishQuotes(java.nio.file.Paths.get(quoteFeed));
+            } catch (IOException e) {
+                JOptionPane.showMessageDialog(this, "Error opening quote feed: " + e.getMessage());
+            }
+        }
+        frameClock = new FrameClock();
+        marketData.startMarketUpdates(frameClock::markDirty);
+        frameClock.start();
     }
-
-    static class Portfolio {
-        private String userId;
-        private double balance;
-        private Map<String, Integer> holdings;
-        private java.util.List<Transaction> transactions;
-        private int nextTransactionId;
-        
-        public Portfolio(String userId, double initialBalance) {
-            this.userId = userId;
-            this.balance = initialBalance;
-            this.holdings = new HashMap<>();
-            this.transactions = new ArrayList<>();
-            this.nextTransactionId = 1;
-        }
-        
-        public boolean buyStock(String symbol, int quantity, double price) {
-            double totalCost = quantity * price;
-            
-            if (totalCost > balance) {
-                return false;
+    
+    // Repaints on its own clock rather than once per market tick, so the
+    // simulation can tick far faster than Swing can usefully redraw. Frames
+    // are skipped when no tick arrived, capped at 30 per second, and spaced
+    // further apart while rendering is expensive. Firings with nothing to
+    // draw double the delay up to IDLE_FRAME_MS; the next tick snaps it back.
+    private class FrameClock implements ActionListener {
+        private final javax.swing.Timer timer = new javax.swing.Timer(MIN_FRAME_MS, this);
+        private final AtomicBoolean dirty = new AtomicBoolean(true);
+        // Raised before each firing looks at `dirty`, so a tick racing with a
+        // clean firing always sees it and wakes the clock
+        private volatile boolean idle;
+        private int renderDelay = MIN_FRAME_MS;
+        private int frames;
+        private long windowStart = System.nanoTime();
+        private double fps;
+        
+        void start() {
+            timer.setCoalesce(true);
+            timer.start();
+        }
+        
+        // Called on the feed thread after every tick
+        void markDirty() {
+            if (!dirty.getAndSet(true) && idle) {
+                SwingUtilities.invokeLater(this::wake);
             }
+        }
+        
+        private void wake() {
+            if (timer.getDelay() > renderDelay) {
+                timer.setDelay(renderDelay);
+                timer.restart();
+            }
+        }
+        
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            idle = true;
+            if (dirty.getAndSet(false)) {
+                idle = false;
+                render();
+            } else {
+                int cap = Math.max(IDLE_FRAME_MS, renderDelay);
+                timer.setDelay(Math.min(cap, timer.getDelay() * 2));
+            }
+            updateStatus();
+        }
+        
+        private void render() {
+            long start = System.nanoTime();
+            refreshMarketTable();
+            refreshPortfolioDisplay();
+            long frameMs = (System.nanoTime() - start) / 1_000_000;
             
-            balance -= totalCost;
-            holdings.put(symbol, holdings.getOrDefault(symbol, 0) + quantity);
-            
-            Transaction transaction = new Transaction(nextTransactionId++, 
-                symbol, "BUY", quantity, price, totalCost);
-            transactions.add(transaction);
-            
-            saveToFile();
-            return true;
+            // Keep rendering under half of the frame budget
+            if (frameMs * 2 > renderDelay) {
+                renderDelay = Math.min(MAX_FRAME_MS, renderDelay * 2);
+            } else if (frameMs * 4 < renderDelay) {
+                renderDelay = Math.max(MIN_FRAME_MS, renderDelay - MIN_FRAME_MS);
+            }
+            timer.setDelay(renderDelay);
+            frames++;
         }
         
-        public boolean sellStock(String symbol, int quantity, double price) {
-            if (!holdings.containsKey(symbol) || holdings.get(symbol) < quantity) {
-                return false;
+        // Runs on every firing so fps decays and the scheduler status stays
+        // current while nothing is being drawn
+        private void updateStatus() {
+            long now = System.nanoTime();
+            if (now - windowStart >= 1_000_000_000L) {
+                fps = frames * 1e9 / (now - windowStart);
+                frames = 0;
+                windowStart = now;
             }
+            TradingCore.TickScheduler scheduler = marketData.getScheduler();
+            if (scheduler != null) {
+                tickStatusLabel.setText(String.format("%s | %.0f fps", scheduler.getStatus(), fps));
+                tickStatusLabel.setForeground(scheduler.getOverruns() > 0 ? Color.RED : Color.DARK_GRAY);
+            }
+        }
+    }
+    
+    // Rolling correlation heatmap plus a one-tick risk estimate for the
+    // portfolio. Reads a matrix snapshot once a second while open; the
+    // matrix is drawn into an image one pixel per cell and scaled, so even
+    // a 1000-symbol universe repaints cheaply.
+    private class CorrelationDialog extends JDialog {
+        private final JComboBox<Integer> windowBox;
+        private final HeatmapPanel heatmap = new HeatmapPanel();
+        private final JLabel riskLabel = new JLabel(" ");
+        private final javax.swing.Timer refreshTimer = new javax.swing.Timer(1000, e -> refresh());
+        
+        CorrelationDialog() {
+            super(StockTradingApp.this, "Correlations", false);
+            setDefaultCloseOperation(JDialog.DISPOSE_ON_CLOSE);
+            setSize(620, 680);
+            setLocationRelativeTo(StockTradingApp.this);
             
-            double totalValue = quantity * price;
-            balance += totalValue;
+            windowBox = new JComboBox<>(marketData.getCorrelationWindows().toArray(new Integer[0]));
+            windowBox.addActionListener(e -> refresh());
             
-            int newQuantity = holdings.get(symbol) - quantity;
-            if (newQuantity == 0) {
-                holdings.remove(symbol);
-            } else {
-                holdings.put(symbol, newQuantity);
-            }
+            JPanel top = new JPanel(new FlowLayout(FlowLayout.LEFT));
+            top.add(new JLabel("Window (ticks):"));
+            top.add(windowBox);
+            top.add(Box.createHorizontalStrut(20));
+            top.add(riskLabel);
             
-            Transaction transaction = new Transaction(nextTransactionId++, 
-                symbol, "SELL", quantity, price, totalValue);
-            transactions.add(transaction);
+            add(top, BorderLayout.NORTH);
+            add(heatmap, BorderLayout.CENTER);
             
-            saveToFile();
-            return true;
+            addWindowListener(new WindowAdapter() {
+                @Override
+                public void windowClosed(WindowEvent e) {
+                    refreshTimer.stop();
+                }
+            });
+            refresh();
+            refreshTimer.start();
         }
         
-        public double getPortfolioValue(Map<String, Stock> marketData) {
-            double holdingsValue = 0;
-            for (Map.Entry<String, Integer> entry : holdings.entrySet()) {
-                String symbol = entry.getKey();
-                int quantity = entry.getValue();
-                if (marketData.containsKey(symbol)) {
-                    holdingsValue += quantity * marketData.get(symbol).getCurrentPrice();
-                }
-            }
-            return balance + holdingsValue;
+        private void refresh() {
+            Integer window = (Integer) windowBox.getSelectedItem();
+            if (window == null) return;
+            TradingCore.CorrelationMatrix matrix = marketData.getCorrelations(window);
+            heatmap.setMatrix(matrix.getSymbols(), matrix.getCorrelationMatrix());
+            
+            double volatility = matrix.getPortfolioVolatility(portfolio.getHoldingsValue(marketData.getStocks()));
+            riskLabel.setText(String.format("Holdings 1-tick sd %s, 95%% VaR %s (%d/%d samples)",
+                TradingCore.Money.format(Math.round(volatility)),
+                TradingCore.Money.format(Math.round(1.645 * volatility)),
+                matrix.getSampleCount(), matrix.getWindow()));
+        }
+    }
+    
+    private static class HeatmapPanel extends JPanel {
+        private String[] symbols = new String[0];
+        private double[][] values = new double[0][0];
+        private java.awt.image.BufferedImage image;
+        
+        HeatmapPanel() {
+            setBackground(Color.WHITE);
+            setToolTipText("");
         }
         
-        public Map<String, Double> getHoldingsValue(Map<String, Stock> marketData) {
-            Map<String, Double> holdingsValue = new HashMap<>();
-            for (Map.Entry<String, Integer> entry : holdings.entrySet()) {
-                String symbol = entry.getKey();
-                int quantity = entry.getValue();
-                if (marketData.containsKey(symbol)) {
-                    holdingsValue.put(symbol, quantity * marketData.get(symbol).getCurrentPrice());
+        void setMatrix(String[] symbols, double[][] values) {
+            int n = symbols.length;
+            if (image == null || image.getWidth() != n) {
+                image = new java.awt.image.BufferedImage(Math.max(1, n), Math.max(1, n),
+                                                         java.awt.image.BufferedImage.TYPE_INT_RGB);
+            }
+            int[] pixels = new int[n * n];
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    pixels[i * n + j] = color(values[i][j]);
                 }
             }
-            return holdingsValue;
+            if (n > 0) image.setRGB(0, 0, n, n, pixels, 0, n);
+            this.symbols = symbols;
+            this.values = values;
+            repaint();
         }
         
-        private void saveToFile() {
-            try {
-                Properties props = new Properties();
-                props.setProperty("balance", String.valueOf(balance));
-                props.setProperty("nextTransactionId", String.valueOf(nextTransactionId));
-                
-                // Save holdings
-                StringBuilder holdingsStr = new StringBuilder();
-                for (Map.Entry<String, Integer> entry : holdings.entrySet()) {
-                    holdingsStr.append(entry.getKey()).append(":").append(entry.getValue()).append(";");
-                }
-                props.setProperty("holdings", holdingsStr.toString());
-                
-                // Save transactions
-                StringBuilder transStr = new StringBuilder();
-                for (Transaction t : transactions) {
-                    transStr.append(t.getSymbol()).append(",")
-                            .append(t.getType()).append(",")
-                            .append(t.getQuantity()).append(",")
-                            .append(t.getTotalAmount()).append(";");
-                }
-                props.setProperty("transactions", transStr.toString());
-                
-                props.store(new FileOutputStream("portfolio.properties"), "Portfolio Data");
-            } catch (IOException e) {
-                System.err.println("Error saving portfolio: " + e.getMessage());
-            }
+        // -1 blue, 0 white, +1 red
+        private static int color(double rho) {
+            int fade = (int) Math.round(255 * (1 - Math.min(1.0, Math.abs(rho))));
+            return rho >= 0
+                ? (255 << 16) | (fade << 8) | fade
+                : (fade << 16) | (fade << 8) | 255;
         }
         
-        public static Portfolio loadFromFile(String userId) {
-            File file = new File("portfolio.properties");
-            if (!file.exists()) {
-                return new Portfolio(userId, 10000.00);
-            }
+        private int labelWidth() {
+            return cellSize() >= 12 ? 50 : 0;
+        }
+        
+        private int cellSize() {
+            int n = Math.max(1, symbols.length);
+            return Math.max(1, Math.min(getWidth(), getHeight()) / n);
+        }
+        
+        @Override
+        protected void paintComponent(Graphics g) {
+            super.paintComponent(g);
+            int n = symbols.length;
+            if (n == 0 || image == null) return;
             
-            try {
-                Properties props = new Properties();
-                props.load(new FileInputStream("portfolio.properties"));
-                
-                double balance = Double.parseDouble(props.getProperty("balance", "10000.0"));
-                Portfolio portfolio = new Portfolio(userId, balance);
-                portfolio.nextTransactionId = Integer.parseInt(props.getProperty("nextTransactionId", "1"));
-                
-                // Load holdings
-                String holdingsStr = props.getProperty("holdings", "");
-                if (!holdingsStr.isEmpty()) {
-                    String[] holdingsArr = holdingsStr.split(";");
-                    for (String holding : holdingsArr) {
-                        if (!holding.isEmpty()) {
-                            String[] parts = holding.split(":");
-                            if (parts.length == 2) {
-                                portfolio.holdings.put(parts[0], Integer.parseInt(parts[1]));
-                            }
-                        }
-                    }
+            int label = labelWidth();
+            int size = Math.max(1, (Math.min(getWidth(), getHeight()) - label) / n);
+            g.drawImage(image, label, label, size * n, size * n, null);
+            if (label > 0) {
+                g.setColor(Color.BLACK);
+                g.setFont(new Font("Arial", Font.PLAIN, Math.min(11, size - 2)));
+                for (int i = 0; i < n; i++) {
+                    g.drawString(symbols[i], 2, label + i * size + size / 2 + 4);
+                    g.drawString(symbols[i].length() > 4 ? symbols[i].substring(0, 4) : symbols[i],
+                                 label + i * size + 1, label - 4);
                 }
-                
-                return portfolio;
-            } catch (IOException | NumberFormatException e) {
-                System.err.println("Error loading portfolio: " + e.getMessage());
-                return new Portfolio(userId, 10000.00);
             }
         }
         
-        public double getBalance() { return balance; }
-        public Map<String, Integer> getHoldings() { return holdings; }
-        public java.util.List<Transaction> getTransactions() { return transactions; }
+        @Override
+        public String getToolTipText(MouseEvent e) {
+            int n = symbols.length;
+            if (n == 0) return null;
+            int label = labelWidth();
+            int size = Math.max(1, (Math.min(getWidth(), getHeight()) - label) / n);
+            int col = (e.getX() - label) / size;
+            int row = (e.getY() - label) / size;
+            if (e.getX() < label || e.getY() < label || row >= n || col >= n) return null;
+            return String.format("%s / %s: %+.3f", symbols[row], symbols[col], values[row][col]);
+        }
     }
-
-    static class MarketData {
-        private Map<String, Stock> stocks;
-        private boolean marketOpen;
-        private java.util.Timer timer;
-        
-        public MarketData() {
-            stocks = new LinkedHashMap<>();
-            marketOpen = true;
-            initializeStocks();
-        }
-        
-        private void initializeStocks() {
-            stocks.put("AAPL", new Stock("AAPL", "Apple Inc.", 175.25, "Technology", 2.7e12));
-            stocks.put("GOOGL", new Stock("GOOGL", "Alphabet Inc.", 138.75, "Technology", 1.7e12));
-            stocks.put("MSFT", new Stock("MSFT", "Microsoft Corp.", 330.45, "Technology", 2.5e12));
-            stocks.put("TSLA", new Stock("TSLA", "Tesla Inc.", 210.30, "Automotive", 650e9));
-            stocks.put("AMZN", new Stock("AMZN", "Amazon.com Inc.", 145.80, "E-commerce", 1.5e12));
-            stocks.put("JPM", new Stock("JPM", "JPMorgan Chase", 155.60, "Finance", 450e9));
-            stocks.put("NVDA", new Stock("NVDA", "NVIDIA Corp.", 485.25, "Technology", 1.2e12));
-            stocks.put("META", new Stock("META", "Meta Platforms", 320.10, "Technology", 820e9));
-            stocks.put("V", new Stock("V", "Visa Inc.", 240.75, "Finance", 500e9));
-            stocks.put("JNJ", new Stock("JNJ", "Johnson & Johnson", 155.90, "Healthcare", 380e9));
-        }
-        
-        public void startMarketUpdates(Runnable updateCallback) {
-            timer = new java.util.Timer();
-            timer.scheduleAtFixedRate(new java.util.TimerTask() {
+    
+    // Target weights or a risk budget in, proposed trades out. Optimisation
+    // and execution both run on SwingWorkers so the EDT never waits on the
+    // solver or on the persistence path.
+    private class RebalanceDialog extends JDialog {
+        private final JComboBox<String> modeBox = new JComboBox<>(new String[] { "Target weights (%)", "Risk budget" });
+        private final JComboBox<Integer> windowBox;
+        private final JTextField costBpsField = new JTextField("5", 4);
+        private final JTextField fixedCostField = new JTextField("1.00", 5);
+        private final JTextArea targetsArea = new JTextArea();
+        private final DefaultTableModel tradesModel =
+            new DefaultTableModel(new String[] { "Symbol", "Side", "Quantity", "Price", "Value" }, 0) {
                 @Override
-                public void run() {
-                    if (marketOpen) {
-                        updateMarket();
-                        SwingUtilities.invokeLater(updateCallback);
-                    }
+                public boolean isCellEditable(int row, int column) {
+                    return false;
                 }
-            }, 0, 2000);
+            };
+        private final JLabel summaryLabel = new JLabel(" ");
+        private final JButton optimizeButton = new JButton("Optimize");
+        private final JButton executeButton = new JButton("Execute");
+        private TradingCore.Rebalancer rebalancer;
+        private TradingCore.RebalancePlan plan;
+        
+        RebalanceDialog() {
+            super(StockTradingApp.this, "Rebalance Portfolio", false);
+            setDefaultCloseOperation(JDialog.DISPOSE_ON_CLOSE);
+            setSize(760, 520);
+            setLocationRelativeTo(StockTradingApp.this);
+            
+            windowBox = new JComboBox<>(marketData.getCorrelationWindows().toArray(new Integer[0]));
+            JPanel options = new JPanel(new FlowLayout(FlowLayout.LEFT));
+            options.add(modeBox);
+            options.add(new JLabel("Risk window:"));
+            options.add(windowBox);
+            options.add(new JLabel("Cost (bps):"));
+            options.add(costBpsField);
+            options.add(new JLabel("Per trade ($):"));
+            options.add(fixedCostField);
+            
+            // Default: equal weights across the market with 5% left in cash
+            StringBuilder defaults = new StringBuilder();
+            Collection<TradingCore.Stock> stocks = marketData.getStocks().values();
+            for (TradingCore.Stock stock : stocks) {
+                defaults.append(String.format("%s %.2f%n", stock.getSymbol(), 95.0 / stocks.size()));
+            }
+            targetsArea.setText(defaults.toString());
+            targetsArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+            JScrollPane targetsScroll = new JScrollPane(targetsArea);
+            targetsScroll.setBorder(BorderFactory.createTitledBorder("Targets (SYMBOL value)"));
+            targetsScroll.setPreferredSize(new Dimension(200, 0));
+            
+            JScrollPane tradesScroll = new JScrollPane(new JTable(tradesModel));
+            tradesScroll.setBorder(BorderFactory.createTitledBorder("Proposed Trades"));
+            
+            optimizeButton.addActionListener(e -> optimize());
+            executeButton.addActionListener(e -> execute());
+            executeButton.setEnabled(false);
+            JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+            buttons.add(optimizeButton);
+            buttons.add(executeButton);
+            JPanel south = new JPanel(new BorderLayout());
+            summaryLabel.setBorder(BorderFactory.createEmptyBorder(5, 10, 5, 10));
+            south.add(summaryLabel, BorderLayout.CENTER);
+            south.add(buttons, BorderLayout.EAST);
+            
+            add(options, BorderLayout.NORTH);
+            add(targetsScroll, BorderLayout.WEST);
+            add(tradesScroll, BorderLayout.CENTER);
+            add(south, BorderLayout.SOUTH);
         }
         
-        private void updateMarket() {
-            for (Stock stock : stocks.values()) {
-                stock.updatePrice();
+        private Map<String, Double> parseTargets(double scale) {
+            Map<String, Double> targets = new LinkedHashMap<>();
+            for (String line : targetsArea.getText().split("\\R")) {
+                String[] parts = line.trim().split("[\\s,=:]+");
+                if (parts.length < 2 || parts[0].isEmpty()) continue;
+                targets.put(parts[0].toUpperCase(), Double.parseDouble(parts[1].replace("%", "")) / scale);
             }
+            return targets;
         }
         
-        public boolean toggleMarket() {
-            marketOpen = !marketOpen;
-            return marketOpen;
+        private void optimize() {
+            boolean riskBudget = modeBox.getSelectedIndex() == 1;
+            Map<String, Double> targets;
+            try {
+                targets = parseTargets(riskBudget ? 1.0 : 100.0);
+                rebalancer = new TradingCore.Rebalancer(Double.parseDouble(costBpsField.getText().trim()),
+                    TradingCore.Money.parse(fixedCostField.getText().trim()));
+            } catch (NumberFormatException e) {
+                JOptionPane.showMessageDialog(this, "Invalid number: " + e.getMessage(),
+                                              "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            TradingCore.Rebalancer solver = rebalancer;
+            Integer window = (Integer) windowBox.getSelectedItem();
+            
+            optimizeButton.setEnabled(false);
+            executeButton.setEnabled(false);
+            summaryLabel.setText("Optimizing...");
+            new SwingWorker<TradingCore.RebalancePlan, Void>() {
+                @Override
+                protected TradingCore.RebalancePlan doInBackground() {
+                    return riskBudget
+                        ? solver.toRiskBudget(portfolio, marketData.getStocks(), targets,
+                                              marketData.getCorrelations(window))
+                        : solver.toWeights(portfolio, marketData.getStocks(), targets);
+                }
+                
+                @Override
+                protected void done() {
+                    optimizeButton.setEnabled(true);
+                    try {
+                        showPlan(get());
+                    } catch (java.util.concurrent.ExecutionException e) {
+                        plan = null;
+                        tradesModel.setRowCount(0);
+                        summaryLabel.setText(" ");
+                        JOptionPane.showMessageDialog(RebalanceDialog.this, e.getCause().getMessage(),
+                                                      "Rebalance Error", JOptionPane.ERROR_MESSAGE);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }.execute();
         }
         
-        public void saveMarketData() {
-            try (PrintWriter writer = new PrintWriter("market_data.csv")) {
-                writer.println("Symbol,Name,Price,Change%,Volume,Sector,MarketCap");
-                for (Stock stock : stocks.values()) {
-                    writer.printf("%s,%s,%.2f,%.2f,%d,%s,%.0f%n",
-                        stock.getSymbol(), stock.getName(), stock.getCurrentPrice(),
-                        stock.getDailyChange(), stock.getVolume(), 
-                        stock.getSector(), stock.getMarketCap());
-                }
-            } catch (IOException e) {
-                JOptionPane.showMessageDialog(null, "Error saving market data: " + e.getMessage());
+        private void showPlan(TradingCore.RebalancePlan plan) {
+            this.plan = plan;
+            tradesModel.setRowCount(0);
+            for (TradingCore.RebalanceTrade trade : plan.getTrades()) {
+                tradesModel.addRow(new Object[] {
+                    trade.getSymbol(),
+                    trade.isBuy() ? "BUY" : "SELL",
+                    String.valueOf(Math.abs(trade.getQuantity())),
+                    TradingCore.Money.format(trade.getPrice()),
+                    TradingCore.Money.format(trade.getValue())
+                });
             }
+            summaryLabel.setText(String.format(
+                "<html>%d trades, turnover %s, est. cost %s, off target %s, cash after %s<br>"
+                + "Best of %d candidates (%s) in %.1f ms</html>",
+                plan.getTrades().size(), TradingCore.Money.format(plan.getTurnover()),
+                TradingCore.Money.format(plan.getEstimatedCost()),
+                TradingCore.Money.format(plan.getMisallocation()),
+                TradingCore.Money.format(plan.getCashAfter()),
+                plan.getCandidatesSearched(), plan.getStrategy(), plan.getElapsedNanos() / 1e6));
+            executeButton.setEnabled(!plan.getTrades().isEmpty());
         }
         
-        public Map<String, Stock> getStocks() { return stocks; }
-        public boolean isMarketOpen() { return marketOpen; }
-        public java.util.List<Stock> getAllStocks() { return new ArrayList<>(stocks.values()); }
-    }
-
-    // GUI Components
-    private MarketData marketData;
-    private Portfolio portfolio;
-    
-    private JTable marketTable;
-    private DefaultTableModel marketTableModel;
-    private JTable holdingsTable;
-    private DefaultTableModel holdingsTableModel;
-    private JTextArea transactionsArea;
-    private JLabel balanceLabel;
-    private JLabel portfolioValueLabel;
-    private JLabel marketStatusLabel;
-    private JTextField symbolField;
-    private JTextField quantityField;
-    private JLabel stockInfoLabel;
-    
-    private String[] marketColumns = {"Symbol", "Name", "Price", "Change%", "Volume", "Sector"};
-    private String[] holdingsColumns = {"Symbol", "Quantity", "Price", "Value"};
-    
-    public StockTradingApp() {
-        marketData = new MarketData();
-        portfolio = Portfolio.loadFromFile("default_user");
-        
-        initializeUI();
-        marketData.startMarketUpdates(this::updateDisplay);
-        updateDisplay();
+        private void execute() {
+            TradingCore.RebalancePlan toExecute = plan;
+            TradingCore.Rebalancer solver = rebalancer;
+            optimizeButton.setEnabled(false);
+            executeButton.setEnabled(false);
+            new SwingWorker<java.util.List<TradingCore.RebalanceTrade>, Void>() {
+                @Override
+                protected java.util.List<TradingCore.RebalanceTrade> doInBackground() {
+                    return solver.execute(portfolio, marketData.getStocks(), toExecute);
+                }
+                
+                @Override
+                protected void done() {
+                    optimizeButton.setEnabled(true);
+                    updatePortfolioDisplay();
+                    try {
+                        java.util.List<TradingCore.RebalanceTrade> rejected = get();
+                        int executed = toExecute.getTrades().size() - rejected.size();
+                        StringBuilder message = new StringBuilder("Executed " + executed + " trades.");
+                        for (TradingCore.RebalanceTrade trade : rejected) {
+                            message.append("\nRejected: ").append(trade.isBuy() ? "BUY " : "SELL ")
+                                   .append(Math.abs(trade.getQuantity())).append(' ').append(trade.getSymbol());
+                        }
+                        JOptionPane.showMessageDialog(RebalanceDialog.this, message.toString());
+                    } catch (java.util.concurrent.ExecutionException e) {
+                        JOptionPane.showMessageDialog(RebalanceDialog.this, e.getCause().getMessage(),
+                                                      "Rebalance Error", JOptionPane.ERROR_MESSAGE);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    plan = null;
+                    tradesModel.setRowCount(0);
+                    summaryLabel.setText(" ");
+                }
+            }.execute();
+        }
     }
     
     private void initializeUI() {
@@ -366,6 +558,9 @@ public class StockTradingApp extends JFrame {
         JMenuItem toggleMarketItem = new JMenuItem("Toggle Market");
         toggleMarketItem.addActionListener(e -> toggleMarket());
         marketMenu.add(toggleMarketItem);
+        JMenuItem correlationsItem = new JMenuItem("Correlations");
+        correlationsItem.addActionListener(e -> new CorrelationDialog().setVisible(true));
+        marketMenu.add(correlationsItem);
         
         menuBar.add(fileMenu);
         menuBar.add(marketMenu);
@@ -419,9 +614,17 @@ public class StockTradingApp extends JFrame {
         
         controlPanel.add(refreshButton);
         controlPanel.add(toggleButton);
+        JButton correlationsButton = new JButton("Correlations");
+        correlationsButton.addActionListener(e -> new CorrelationDialog().setVisible(true));
+        controlPanel.add(correlationsButton);
         controlPanel.add(Box.createHorizontalStrut(20));
         controlPanel.add(marketStatusLabel);
         
+        tickStatusLabel = new JLabel(" ");
+        tickStatusLabel.setFont(new Font("Arial", Font.PLAIN, 11));
+        controlPanel.add(Box.createHorizontalStrut(20));
+        controlPanel.add(tickStatusLabel);
+        
         // Market table
         marketTableModel = new DefaultTableModel(marketColumns, 0) {
             @Override
@@ -444,10 +647,34 @@ public class StockTradingApp extends JFrame {
         
         panel.add(controlPanel, BorderLayout.NORTH);
         panel.add(scrollPane, BorderLayout.CENTER);
+        panel.add(createMoversPanel(), BorderLayout.EAST);
         
         return panel;
     }
     
+    private JPanel createMoversPanel() {
+        JPanel panel = new JPanel(new GridLayout(3, 1, 0, 5));
+        panel.setPreferredSize(new Dimension(190, 0));
+        
+        gainersModel = new DefaultListModel<>();
+        losersModel = new DefaultListModel<>();
+        activeModel = new DefaultListModel<>();
+        
+        panel.add(createMoversList("Top Gainers", gainersModel));
+        panel.add(createMoversList("Top Losers", losersModel));
+        panel.add(createMoversList("Most Active", activeModel));
+        
+        return panel;
+    }
+    
+    private JScrollPane createMoversList(String title, DefaultListModel<String> model) {
+        JList<String> list = new JList<>(model);
+        list.setFont(new Font("Monospaced", Font.PLAIN, 12));
+        JScrollPane scroll = new JScrollPane(list);
+        scroll.setBorder(BorderFactory.createTitledBorder(title));
+        return scroll;
+    }
+    
     private JPanel createTradingPanel() {
         JPanel panel = new JPanel(new BorderLayout());
         panel.setBorder(BorderFactory.createTitledBorder("Trading"));
@@ -479,6 +706,10 @@ public class StockTradingApp extends JFrame {
         controlPanel.add(buyButton);
         controlPanel.add(sellButton);
         
+        JButton rebalanceButton = new JButton("Rebalance...");
+        rebalanceButton.addActionListener(e -> new RebalanceDialog().setVisible(true));
+        controlPanel.add(rebalanceButton);
+        
         // Stock info
         stockInfoLabel = new JLabel("Select a stock from the market table");
         stockInfoLabel.setBorder(BorderFactory.createEmptyBorder(5, 10, 5, 10));
@@ -525,14 +756,24 @@ public class StockTradingApp extends JFrame {
         JScrollPane holdingsScroll = new JScrollPane(holdingsTable);
         holdingsPanel.add(holdingsScroll, BorderLayout.CENTER);
         
-        // Transactions area
+        // Transaction history
         JPanel transactionsPanel = new JPanel(new BorderLayout());
-        transactionsPanel.setBorder(BorderFactory.createTitledBorder("Recent Transactions"));
-        
-        transactionsArea = new JTextArea(6, 25);
-        transactionsArea.setEditable(false);
-        transactionsArea.setFont(new Font("Monospaced", Font.PLAIN, 12));
-        JScrollPane transScroll = new JScrollPane(transactionsArea);
+        transactionsPanel.setBorder(BorderFactory.createTitledBorder("Transaction History"));
+        
+        JPanel filterPanel = new JPanel(new BorderLayout(5, 0));
+        filterPanel.add(new JLabel("Filter:"), BorderLayout.WEST);
+        JTextField filterField = new JTextField();
+        filterField.setToolTipText("Symbol, BUY or SELL");
+        filterField.addActionListener(e -> transactionsModel.setFilter(filterField.getText()));
+        filterPanel.add(filterField, BorderLayout.CENTER);
+        
+        transactionsModel = new TransactionTableModel(portfolio);
+        transactionsTable = new JTable(transactionsModel);
+        transactionsTable.setRowHeight(20);
+        transactionsTable.setFont(new Font("Monospaced", Font.PLAIN, 12));
+        transactionsTable.setPreferredScrollableViewportSize(new Dimension(0, 140));
+        JScrollPane transScroll = new JScrollPane(transactionsTable);
+        transactionsPanel.add(filterPanel, BorderLayout.NORTH);
         transactionsPanel.add(transScroll, BorderLayout.CENTER);
         
         // Layout all portfolio components
@@ -546,106 +787,136 @@ public class StockTradingApp extends JFrame {
         return panel;
     }
     
-    private void updateDisplay() {
-        updateMarketTable();
-        updatePortfolioDisplay();
-    }
-    
     private void updateMarketTable() {
         if (marketTableModel == null) return;
+        SwingUtilities.invokeLater(this::refreshMarketTable);
+    }
+    
+    // EDT only
+    private void refreshMarketTable() {
+        marketTableModel.setRowCount(0);
+        for (TradingCore.Stock stock : marketData.getAllStocks()) {
+            Object[] row = {
+                stock.getSymbol(),
+                stock.getName(),
+                stock.getFormattedPrice(),
+                stock.getFormattedChange(),
+                stock.getFormattedVolume(),
+                stock.getSector()
+            };
+            marketTableModel.addRow(row);
+        }
         
-        SwingUtilities.invokeLater(() -> {
-            marketTableModel.setRowCount(0);
-            for (Stock stock : marketData.getAllStocks()) {
-                Object[] row = {
-                    stock.getSymbol(),
-                    stock.getName(),
-                    stock.getFormattedPrice(),
-                    stock.getFormattedChange(),
-                    stock.getFormattedVolume(),
-                    stock.getSector()
-                };
-                marketTableModel.addRow(row);
-            }
-            
-            // Apply color coding to change column
-            for (int i = 0; i < marketTableModel.getRowCount(); i++) {
-                String change = (String) marketTableModel.getValueAt(i, 3);
-                if (change != null) {
-                    if (change.startsWith("+")) {
-                        marketTable.setDefaultRenderer(String.class, new DefaultTableCellRenderer() {
-                            @Override
-                            public Component getTableCellRendererComponent(JTable table, Object value,
-                                    boolean isSelected, boolean hasFocus, int row, int column) {
-                                Component c = super.getTableCellRendererComponent(table, value, 
-                                    isSelected, hasFocus, row, column);
-                                if (column == 3) {
-                                    String val = (String) value;
-                                    if (val != null && val.startsWith("+")) {
-                                        c.setForeground(Color.GREEN);
-                                    } else if (val != null && val.startsWith("-")) {
-                                        c.setForeground(Color.RED);
-                                    }
+        updateMovers();
+        
+        // Index rows follow the individual stocks
+        TradingCore.MarketIndices indices = marketData.getIndices();
+        for (String symbol : indices.getSymbols()) {
+            Object[] row = {
+                symbol,
+                indices.getName(symbol),
+                String.format("%.2f", indices.getLevel(symbol)),
+                String.format("%+.2f%%", indices.getChangePercent(symbol)),
+                "-",
+                "Index"
+            };
+            marketTableModel.addRow(row);
+        }
+        
+        // Apply color coding to change column
+        for (int i = 0; i < marketTableModel.getRowCount(); i++) {
+            String change = (String) marketTableModel.getValueAt(i, 3);
+            if (change != null) {
+                if (change.startsWith("+")) {
+                    marketTable.setDefaultRenderer(String.class, new DefaultTableCellRenderer() {
+                        @Override
+                        public Component getTableCellRendererComponent(JTable table, Object value,
+                                boolean isSelected, boolean hasFocus, int row, int column) {
+                            Component c = super.getTableCellRendererComponent(table, value, 
+                                isSelected, hasFocus, row, column);
+                            if (column == 3) {
+                                String val = (String) value;
+                                if (val != null && val.startsWith("+")) {
+                                    c.setForeground(Color.GREEN);
+                                } else if (val != null && val.startsWith("-")) {
+                                    c.setForeground(Color.RED);
                                 }
-                                return c;
                             }
-                        });
-                    }
+                            return c;
+                        }
+                    });
                 }
             }
-        });
+        }
+    }
+    
+    private void updateMovers() {
+        TradingCore.TopMovers movers = marketData.getTopMovers();
+        fillMovers(gainersModel, movers.getTopGainers(MOVERS_SHOWN), false);
+        fillMovers(losersModel, movers.getTopLosers(MOVERS_SHOWN), false);
+        fillMovers(activeModel, movers.getMostActive(MOVERS_SHOWN), true);
+    }
+    
+    private void fillMovers(DefaultListModel<String> model, java.util.List<TradingCore.Stock> stocks, boolean byVolume) {
+        model.clear();
+        for (TradingCore.Stock stock : stocks) {
+            model.addElement(String.format("%-6s %s", stock.getSymbol(),
+                byVolume ? stock.getFormattedVolume() : stock.getFormattedChange()));
+        }
     }
     
     private void updatePortfolioDisplay() {
-        SwingUtilities.invokeLater(() -> {
-            // Update summary
-            double portfolioValue = portfolio.getPortfolioValue(marketData.getStocks());
-            
-            balanceLabel.setText(String.format("Balance: $%,.2f", portfolio.getBalance()));
-            portfolioValueLabel.setText(String.format("Portfolio Value: $%,.2f", portfolioValue));
-            
-            // Update holdings table
-            holdingsTableModel.setRowCount(0);
-            Map<String, Double> holdingsValue = portfolio.getHoldingsValue(marketData.getStocks());
+        SwingUtilities.invokeLater(this::refreshPortfolioDisplay);
+    }
+    
+    // EDT only
+    private void refreshPortfolioDisplay() {
+        // Update summary
+        long portfolioValue = portfolio.getPortfolioValue(marketData.getStocks());
+        
+        balanceLabel.setText("Balance: " + TradingCore.Money.format(portfolio.getBalance()));
+        portfolioValueLabel.setText("Portfolio Value: " + TradingCore.Money.format(portfolioValue));
+        
+        // Update holdings table
+        holdingsTableModel.setRowCount(0);
+        Map<String, Long> holdingsValue = portfolio.getHoldingsValue(marketData.getStocks());
+        
+        for (Map.Entry<String, Integer> entry : portfolio.getHoldings().entrySet()) {
+            String symbol = entry.getKey();
+            int quantity = entry.getValue();
             
-            for (Map.Entry<String, Integer> entry : portfolio.getHoldings().entrySet()) {
-                String symbol = entry.getKey();
-                int quantity = entry.getValue();
+            if (marketData.getStocks().containsKey(symbol)) {
+                long price = marketData.getStocks().get(symbol).getPriceMinor();
+                long value = holdingsValue.getOrDefault(symbol, 0L);
                 
-                if (marketData.getStocks().containsKey(symbol)) {
-                    double price = marketData.getStocks().get(symbol).getCurrentPrice();
-                    double value = holdingsValue.getOrDefault(symbol, 0.0);
-                    
-                    Object[] row = {
-                        symbol,
-                        String.valueOf(quantity),
-                        String.format("$%.2f", price),
-                        String.format("$%,.2f", value)
-                    };
-                    holdingsTableModel.addRow(row);
-                }
-            }
-            
-            // Update transactions
-            transactionsArea.setText("");
-            java.util.List<Transaction> transactions = portfolio.getTransactions();
-            int start = Math.max(0, transactions.size() - 5);
-            
-            for (int i = Math.max(0, transactions.size() - 1); i >= start; i--) {
-                transactionsArea.append(transactions.get(i).getFormattedString() + "\n");
+                Object[] row = {
+                    symbol,
+                    String.valueOf(quantity),
+                    TradingCore.Money.format(price),
+                    TradingCore.Money.format(value)
+                };
+                holdingsTableModel.addRow(row);
             }
-        });
+        }
+        
+        // Only transactions added since the last refresh are looked at
+        transactionsModel.refresh();
     }
     
     private void updateStockInfo(String symbol) {
         if (marketData.getStocks().containsKey(symbol)) {
-            Stock stock = marketData.getStocks().get(symbol);
+            TradingCore.Stock stock = marketData.getStocks().get(symbol);
             symbolField.setText(symbol);
             
             String info = String.format("<html>%s (%s) - %s (%s)<br>Sector: %s | Market Cap: $%.1fB</html>",
                 stock.getName(), stock.getSymbol(), stock.getFormattedPrice(),
                 stock.getFormattedChange(), stock.getSector(), stock.getMarketCap() / 1e9);
             stockInfoLabel.setText(info);
+        } else if (marketData.getIndices().contains(symbol)) {
+            TradingCore.MarketIndices indices = marketData.getIndices();
+            stockInfoLabel.setText(String.format("<html>%s (%s) - %.2f (%+.2f%%)<br>Constituents: %d</html>",
+                indices.getName(symbol), symbol, indices.getLevel(symbol),
+                indices.getChangePercent(symbol), indices.getConstituentCount(symbol)));
         }
     }
     
@@ -670,22 +941,17 @@ public class StockTradingApp extends JFrame {
             return;
         }
         
-        Stock stock = marketData.getStocks().get(symbol);
-        double totalCost = quantity * stock.getCurrentPrice();
+        TradingCore.Stock stock = marketData.getStocks().get(symbol);
+        long price = stock.getPriceMinor();
+        long totalCost = TradingCore.Money.times(price, quantity);
         
         int confirm = JOptionPane.showConfirmDialog(this,
-            String.format("Buy %d shares of %s at %s?\nTotal: $%,.2f", 
-                quantity, symbol, stock.getFormattedPrice(), totalCost),
+            String.format("Buy %d shares of %s at %s?\nTotal: %s", 
+                quantity, symbol, TradingCore.Money.format(price), TradingCore.Money.format(totalCost)),
             "Confirm Buy", JOptionPane.YES_NO_OPTION);
         
         if (confirm == JOptionPane.YES_OPTION) {
-            boolean success = portfolio.buyStock(symbol, quantity, stock.getCurrentPrice());
-            if (success) {
-                JOptionPane.showMessageDialog(this, "Purchase successful!");
-                updatePortfolioDisplay();
-            } else {
-                JOptionPane.showMessageDialog(this, "Insufficient balance", "Error", JOptionPane.ERROR_MESSAGE);
-            }
+            submitOrder(true, symbol, quantity, price, "Purchase successful!", "Insufficient balance");
         }
     }
     
@@ -700,7 +966,8 @@ public class StockTradingApp extends JFrame {
             return;
         }
         
-        if (!portfolio.getHoldings().containsKey(symbol)) {
+        int ownedQuantity = portfolio.getQuantity(symbol);
+        if (ownedQuantity == 0) {
             JOptionPane.showMessageDialog(this, "You don't own this stock", "Error", JOptionPane.ERROR_MESSAGE);
             return;
         }
@@ -710,7 +977,6 @@ public class StockTradingApp extends JFrame {
             return;
         }
         
-        int ownedQuantity = portfolio.getHoldings().get(symbol);
         if (quantity > ownedQuantity) {
             JOptionPane.showMessageDialog(this, 
                 String.format("Insufficient shares. You own %d shares", ownedQuantity),
@@ -718,25 +984,51 @@ public class StockTradingApp extends JFrame {
             return;
         }
         
-        Stock stock = marketData.getStocks().get(symbol);
-        double totalValue = quantity * stock.getCurrentPrice();
+        TradingCore.Stock stock = marketData.getStocks().get(symbol);
+        long price = stock.getPriceMinor();
+        long totalValue = TradingCore.Money.times(price, quantity);
         
         int confirm = JOptionPane.showConfirmDialog(this,
-            String.format("Sell %d shares of %s at %s?\nTotal: $%,.2f", 
-                quantity, symbol, stock.getFormattedPrice(), totalValue),
+            String.format("Sell %d shares of %s at %s?\nTotal: %s", 
+                quantity, symbol, TradingCore.Money.format(price), TradingCore.Money.format(totalValue)),
             "Confirm Sell", JOptionPane.YES_NO_OPTION);
         
         if (confirm == JOptionPane.YES_OPTION) {
-            boolean success = portfolio.sellStock(symbol, quantity, stock.getCurrentPrice());
-            if (success) {
-                JOptionPane.showMessageDialog(this, "Sale successful!");
-                updatePortfolioDisplay();
-            } else {
-                JOptionPane.showMessageDialog(this, "Sell failed", "Error", JOptionPane.ERROR_MESSAGE);
-            }
+            submitOrder(false, symbol, quantity, price, "Sale successful!", "Sell failed");
         }
     }
     
+    // Admission control may park the order until its rate-limit slot, so
+    // the trade runs on a worker and only the outcome comes back to the EDT
+    private void submitOrder(boolean buy, String symbol, int quantity, long price,
+                             String successMessage, String failureMessage) {
+        new SwingWorker<Boolean, Void>() {
+            @Override
+            protected Boolean doInBackground() {
+                return buy ? portfolio.buyStock(symbol, quantity, price)
+                           : portfolio.sellStock(symbol, quantity, price);
+            }
+            
+            @Override
+            protected void done() {
+                try {
+                    if (get()) {
+                        JOptionPane.showMessageDialog(StockTradingApp.this, successMessage);
+                        refreshPortfolioDisplay();
+                    } else {
+                        JOptionPane.showMessageDialog(StockTradingApp.this, failureMessage,
+                                                      "Error", JOptionPane.ERROR_MESSAGE);
+                    }
+                } catch (java.util.concurrent.ExecutionException e) {
+                    JOptionPane.showMessageDialog(StockTradingApp.this, e.getCause().getMessage(),
+                                                  "Error", JOptionPane.ERROR_MESSAGE);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }.execute();
+    }
+    
     private void toggleMarket() {
         boolean isOpen = marketData.toggleMarket();
         String status = isOpen ? "OPEN" : "CLOSED";
@@ -749,8 +1041,12 @@ public class StockTradingApp extends JFrame {
     }
     
     private void exportMarketData() {
-        marketData.saveMarketData();
-        JOptionPane.showMessageDialog(this, "Market data exported to market_data.csv");
+        try {
+            marketData.saveMarketData();
+            JOptionPane.showMessageDialog(this, "Market data exported to market_data.csv");
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "Error saving market data: " + e.getMessage());
+        }
     }
     
     public static void main(String[] args) {
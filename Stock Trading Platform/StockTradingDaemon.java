@@ -0,0 +1,114 @@
+// StockTradingDaemon.java - Headless entry point for the trading core
+//
+// Runs MarketData, portfolio persistence and the index, movers and candle
+// subsystems without building the Swing UI. This class and the model classes
+// it uses never reference java.awt or javax.swing, so no AWT classes are
+// loaded, which keeps startup and RSS small enough to pack many instances
+// per box or container.
+//
+//   java StockTradingDaemon [--tick-us 2000000] [--status-s 10] [--user default_user]
+//                           [--data portfolio-<user>.properties] [--quote-feed quotes.feed]
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class StockTradingDaemon {
+    private final TradingCore.MarketData marketData;
+    private final TradingCore.Portfolio portfolio;
+    private final TradingCore.PersistenceWorker persistence;
+    private final ScheduledExecutorService statusReporter;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    StockTradingDaemon(String userId, String dataFile) {
+        marketData = new TradingCore.MarketData();
+        portfolio = TradingCore.Portfolio.loadFromFile(userId,
+            dataFile != null ? dataFile : TradingCore.Portfolio.defaultDataFile(userId));
+        persistence = TradingCore.PersistenceWorker.fromSystemProperties();
+        portfolio.setPersistence(persistence);
+        statusReporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "daemon-status");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    void start(long tickMicros, long statusSeconds, String quoteFeed) throws IOException {
+        if (quoteFeed != null) {
+            marketData.publishQuotes(Paths.get(quoteFeed));
+        }
+        marketData.startMarketUpdates(() -> { }, tickMicros, TimeUnit.MICROSECONDS);
+        if (statusSeconds > 0) {
+            statusReporter.scheduleAtFixedRate(this::printStatus, statusSeconds, statusSeconds,
+                                               TimeUnit.SECONDS);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(this::stop, "daemon-shutdown"));
+        System.out.printf("Trading daemon started (seed %d, tick %d us, durability %s%s)%n",
+            marketData.getSimulator().getSeed(), tickMicros, persistence.getMode(),
+            quoteFeed != null ? ", quotes -> " + quoteFeed : "");
+    }
+
+    void stop() {
+        statusReporter.shutdownNow();
+        marketData.stopMarketUpdates();
+        if (marketData.getQuoteFeed() != null) {
+            try {
+                marketData.getQuoteFeed().close();
+            } catch (IOException e) {
+                System.err.println("Error closing quote feed: " + e.getMessage());
+            }
+        }
+        persistence.shutdown();
+        stopped.countDown();
+    }
+
+    void awaitStop() throws InterruptedException {
+        stopped.await();
+    }
+
+    private void printStatus() {
+        TradingCore.MarketIndices indices = marketData.getIndices();
+        StringBuilder line = new StringBuilder();
+        line.append(marketData.isMarketOpen() ? "OPEN" : "CLOSED");
+        line.append(String.format(" | ^MKT %.2f (%+.2f%%)", indices.getLevel("^MKT"),
+                                  indices.getChangePercent("^MKT")));
+        for (TradingCore.Stock stock : marketData.getTopMovers().getTopGainers(1)) {
+            line.append(" | top ").append(stock.getSymbol()).append(' ').append(stock.getFormattedChange());
+        }
+        line.append(" | portfolio ").append(TradingCore.Money.format(portfolio.getPortfolioValue(marketData.getStocks())));
+        line.append(" | pending writes ").append(persistence.getPendingChanges());
+        if (marketData.getScheduler() != null) {
+            line.append(" | ").append(marketData.getScheduler().getStatus());
+        }
+        System.out.println(line);
+    }
+
+    public static void main(String[] args) throws InterruptedException, IOException {
+        // Belt and braces: if anything does reach for AWT it must not open a display
+        System.setProperty("java.awt.headless", "true");
+
+        long tickMicros = Long.getLong("market.tickMicros", 2_000_000L);
+        long statusSeconds = 10;
+        String userId = "default_user";
+        String dataFile = null;
+        String quoteFeed = System.getProperty("market.quoteFeed");
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--tick-us": tickMicros = Long.parseLong(args[i + 1]); break;
+                case "--status-s": statusSeconds = Long.parseLong(args[i + 1]); break;
+                case "--user": userId = args[i + 1]; break;
+                case "--data": dataFile = args[i + 1]; break;
+                case "--quote-feed": quoteFeed = args[i + 1]; break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+            }
+        }
+
+        StockTradingDaemon daemon = new StockTradingDaemon(userId, dataFile);
+        daemon.start(tickMicros, statusSeconds, quoteFeed);
+        daemon.awaitStop();
+    }
+}
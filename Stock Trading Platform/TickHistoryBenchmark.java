@@ -0,0 +1,79 @@
+// TickHistoryBenchmark.java - Compressed tick history vs a boxed price list
+//
+// Encodes a synthetic random-walk tick stream (1 ms ticks with some
+// jitter, cent prices) into a TradingCore.TickHistory and into the old
+// List<Double> representation. Reports heap per tick for both, encode and
+// sequential decode cost, and checks that decoding is lossless.
+//
+//   java TickHistoryBenchmark [ticks=10000000] [volatility=0.0002]
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+public class TickHistoryBenchmark {
+
+    // Per-thread allocation counter; HotSpot-specific, -1 elsewhere
+    static long allocatedBytes() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads)
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    public static void main(String[] args) {
+        int ticks = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        double volatility = args.length > 1 ? Double.parseDouble(args[1]) : 0.0002;
+
+        long[] timestamps = new long[ticks];
+        long[] prices = new long[ticks];
+        SplittableRandom random = new SplittableRandom(42);
+        long time = System.currentTimeMillis();
+        double price = 175.25;
+        for (int i = 0; i < ticks; i++) {
+            time += random.nextInt(20) == 0 ? random.nextInt(3) : 1;
+            price *= Math.exp(volatility * random.nextGaussian());
+            timestamps[i] = time;
+            prices[i] = TradingCore.Money.fromDouble(price);
+        }
+
+        long before = allocatedBytes();
+        List<Double> boxed = new ArrayList<>();
+        for (int i = 0; i < ticks; i++) {
+            boxed.add(TradingCore.Money.toDouble(prices[i]));
+        }
+        long boxedBytes = allocatedBytes() - before;
+
+        TradingCore.TickHistory history = new TradingCore.TickHistory();
+        long start = System.nanoTime();
+        for (int i = 0; i < ticks; i++) {
+            history.append(timestamps[i], prices[i]);
+        }
+        double encodeNanos = (System.nanoTime() - start) / (double) ticks;
+
+        double bestDecode = Double.MAX_VALUE;
+        long mismatches = 0;
+        for (int round = 0; round < 5; round++) {
+            start = System.nanoTime();
+            int i = 0;
+            for (TradingCore.TickHistory.Cursor cursor = history.cursor(); cursor.next(); i++) {
+                if (cursor.timestamp() != timestamps[i] || cursor.priceMinor() != prices[i]) {
+                    mismatches++;
+                }
+            }
+            bestDecode = Math.min(bestDecode, (System.nanoTime() - start) / (double) ticks);
+            if (i != ticks) mismatches += Math.abs(ticks - i);
+        }
+
+        System.out.printf("%,d ticks, volatility %.4f per tick%n%n", ticks, volatility);
+        System.out.printf("List<Double>  %6.2f bytes/tick (values only, no timestamps; incl. list growth garbage)%n",
+                          boxedBytes < 0 ? Double.NaN : boxedBytes / (double) ticks);
+        System.out.printf("TickHistory   %6.2f bytes/tick (timestamp + price)%n",
+                          history.getEncodedBytes() / (double) ticks);
+        System.out.printf("encode %.1f ns/tick, decode %.1f ns/tick, %s%n", encodeNanos, bestDecode,
+                          mismatches == 0 ? "lossless" : mismatches + " MISMATCHES");
+        if (boxed.size() != ticks) throw new AssertionError();
+    }
+}
@@ -0,0 +1,2595 @@
+// TradingCore.java - Market simulation, portfolio and persistence core
+//
+// Everything the trading platform needs that is not UI. Kept out of
+// StockTradingApp (a JFrame) so the headless daemon and tools can use these
+// classes without loading AWT: lambdas and private access in nested classes
+// resolve their outer class, and StockTradingApp's superclass chain is AWT.
+import java.io.*;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+final class TradingCore {
+    private TradingCore() {}
+    
+    // Fixed-point money: prices and cash are long counts of minor units
+    // (cents) at SCALE decimal places. Ledger arithmetic is exact, allocates
+    // nothing (unlike BigDecimal), and overflow throws instead of wrapping.
+    static final class Money {
+        static final int SCALE = 2;
+        static final long UNIT = 100;
+        
+        private Money() {}
+        
+        static long of(long whole) {
+            return Math.multiplyExact(whole, UNIT);
+        }
+        
+        // Only for values that start life as doubles, e.g. simulated prices
+        static long fromDouble(double amount) {
+            return Math.round(amount * UNIT);
+        }
+        
+        static double toDouble(long minor) {
+            return minor / (double) UNIT;
+        }
+        
+        static long times(long minor, int quantity) {
+            return Math.multiplyExact(minor, (long) quantity);
+        }
+        
+        // Exact decimal parse ("9970.7" -> 997070); extra digits round half-up
+        static long parse(String text) {
+            return new java.math.BigDecimal(text.trim())
+                .setScale(SCALE, java.math.RoundingMode.HALF_UP)
+                .unscaledValue().longValueExact();
+        }
+        
+        // Converts an amount persisted at another scale to SCALE
+        static long rescale(long minor, int fromScale) {
+            if (fromScale == SCALE) return minor;
+            return java.math.BigDecimal.valueOf(minor, fromScale)
+                .setScale(SCALE, java.math.RoundingMode.HALF_UP)
+                .unscaledValue().longValueExact();
+        }
+        
+        static String toPlainString(long minor) {
+            long abs = Math.abs(minor);
+            return String.format("%s%d.%0" + SCALE + "d", minor < 0 ? "-" : "", abs / UNIT, abs % UNIT);
+        }
+        
+        static String format(long minor) {
+            long abs = Math.abs(minor);
+            return String.format("%s$%,d.%0" + SCALE + "d", minor < 0 ? "-" : "", abs / UNIT, abs % UNIT);
+        }
+    }
+    
+    static class Stock {
+        private String symbol;
+        private String name;
+        private long priceMinor;
+        private double dailyChange;
+        private int volume;
+        private String sector;
+        private double marketCap;
+        private final TickHistory history = new TickHistory();
+        
+        public Stock(String symbol, String name, double price, String sector, 
+                     double marketCap) {
+            this.symbol = symbol;
+            this.name = name;
+            this.priceMinor = Money.fromDouble(price);
+            this.sector = sector;
+            this.marketCap = marketCap;
+            this.dailyChange = 0.0;
+            this.volume = 1000000;
+            this.history.append(System.currentTimeMillis(), priceMinor);
+        }
+        
+        // Applies one simulated tick; the move itself comes from MarketData's PriceModel
+        public void updatePrice(double newPrice, double changePercent, int volume) {
+            this.priceMinor = Money.fromDouble(newPrice);
+            this.dailyChange = Math.round(changePercent * 100.0) / 100.0;
+            this.volume = volume;
+            history.append(System.currentTimeMillis(), priceMinor);
+        }
+        
+        public String getSymbol() { return symbol; }
+        public String getName() { return name; }
+        public long getPriceMinor() { return priceMinor; }
+        // Floating point view for analytics (indices, models, candles); never for cash
+        public double getCurrentPrice() { return Money.toDouble(priceMinor); }
+        public double getDailyChange() { return dailyChange; }
+        public int getVolume() { return volume; }
+        public String getSector() { return sector; }
+        public double getMarketCap() { return marketCap; }
+        public TickHistory getPriceHistory() { return history; }
+        
+        public String getFormattedPrice() {
+            return Money.format(priceMinor);
+        }
+        
+        public String getFormattedChange() {
+            return String.format("%+.2f%%", dailyChange);
+        }
+        
+        public String getFormattedVolume() {
+            return String.format("%,d", volume);
+        }
+    }
+
+    // ==================== TICK HISTORY ====================
+    
+    // Compressed per-symbol tick history in the style of Facebook's Gorilla.
+    // Ticks go into blocks of BLOCK_TICKS. Each block starts with a raw
+    // timestamp and price, then for every later tick:
+    //   timestamp: delta-of-delta in a variable-width bucket
+    //              ('0' | '10'+7 | '110'+9 | '1110'+12 | '1111'+64 bits)
+    //   price:     XOR with the previous value's double bits
+    //              ('0' same | '10' + bits inside the previous leading/trailing
+    //              zero window | '11' + 5-bit leading, 6-bit length, bits)
+    // Prices are encoded as the double of their minor units, so the values
+    // are integral and the XORs have long zero tails. Regular ticks cost one
+    // timestamp bit and a couple of bytes of price, against ~20 bytes for a
+    // boxed Double in a list.
+    //
+    // Single writer (the feed thread). Readers take a block's published
+    // count before its words, so they always decode a complete prefix; the
+    // last word can be OR-ed by the writer while read, but only in bits past
+    // that prefix.
+    static class TickHistory {
+        static final int BLOCK_TICKS = 4096;
+        
+        private static final class Block {
+            final long firstTimestamp;
+            volatile long lastTimestamp;
+            volatile long[] words = new long[16];
+            volatile int count;
+            
+            // Writer-only encoder state
+            long bitLength;
+            long previousTimestamp;
+            long previousDelta;
+            long previousBits;
+            int previousLeading = -1;
+            int previousTrailing;
+            
+            Block(long firstTimestamp) {
+                this.firstTimestamp = firstTimestamp;
+            }
+            
+            void writeBit(boolean bit) {
+                writeBits(bit ? 1 : 0, 1);
+            }
+            
+            // Packs the low n bits of value (1 <= n <= 64), most significant first
+            void writeBits(long value, int n) {
+                int index = (int) (bitLength >>> 6);
+                int used = (int) (bitLength & 63);
+                long[] w = words;
+                if (index + 1 >= w.length) {
+                    w = Arrays.copyOf(w, w.length * 2);
+                    words = w;
+                }
+                long v = n == 64 ? value : value & ((1L << n) - 1);
+                int free = 64 - used;
+                if (n <= free) {
+                    w[index] |= v << (free - n);
+                } else {
+                    int spill = n - free;
+                    w[index] |= v >>> spill;
+                    w[index + 1] = v << (64 - spill);
+                }
+                bitLength += n;
+            }
+        }
+        
+        private volatile Block[] blocks = new Block[0];
+        private volatile long size;
+        
+        public void append(long timestamp, long priceMinor) {
+            Block[] current = blocks;
+            Block block = current.length == 0 ? null : current[current.length - 1];
+            long bits = Double.doubleToRawLongBits((double) priceMinor);
+            
+            if (block == null || block.count == BLOCK_TICKS) {
+                if (block != null) {
+                    // Closed blocks keep only the words they use
+                    block.words = Arrays.copyOf(block.words, (int) ((block.bitLength + 63) >>> 6));
+                }
+                block = new Block(timestamp);
+                block.writeBits(timestamp, 64);
+                block.writeBits(bits, 64);
+                block.previousTimestamp = timestamp;
+                block.previousBits = bits;
+                block.lastTimestamp = timestamp;
+                block.count = 1;
+                Block[] grown = Arrays.copyOf(current, current.length + 1);
+                grown[current.length] = block;
+                blocks = grown;
+                size = size + 1;
+                return;
+            }
+            
+            long delta = timestamp - block.previousTimestamp;
+            long deltaOfDelta = delta - block.previousDelta;
+            if (deltaOfDelta == 0) {
+                block.writeBit(false);
+            } else if (deltaOfDelta >= -64 && deltaOfDelta <= 63) {
+                block.writeBits(0b10, 2);
+                block.writeBits(deltaOfDelta, 7);
+            } else if (deltaOfDelta >= -256 && deltaOfDelta <= 255) {
+                block.writeBits(0b110, 3);
+                block.writeBits(deltaOfDelta, 9);
+            } else if (deltaOfDelta >= -2048 && deltaOfDelta <= 2047) {
+                block.writeBits(0b1110, 4);
+                block.writeBits(deltaOfDelta, 12);
+            } else {
+                block.writeBits(0b1111, 4);
+                block.writeBits(deltaOfDelta, 64);
+            }
+            block.previousDelta = delta;
+            block.previousTimestamp = timestamp;
+            
+            long xor = bits ^ block.previousBits;
+            if (xor == 0) {
+                block.writeBit(false);
+            } else {
+                block.writeBit(true);
+                int leading = Math.min(31, Long.numberOfLeadingZeros(xor));
+                int trailing = Long.numberOfTrailingZeros(xor);
+                if (block.previousLeading >= 0 && leading >= block.previousLeading
+                        && trailing >= block.previousTrailing) {
+                    block.writeBit(false);
+                    block.writeBits(xor >>> block.previousTrailing,
+                                    64 - block.previousLeading - block.previousTrailing);
+                } else {
+                    int significant = 64 - leading - trailing;
+                    block.writeBit(true);
+                    block.writeBits(leading, 5);
+                    block.writeBits(significant - 1, 6);
+                    block.writeBits(xor >>> trailing, significant);
+                    block.previousLeading = leading;
+                    block.previousTrailing = trailing;
+                }
+            }
+            block.previousBits = bits;
+            
+            block.lastTimestamp = timestamp;
+            block.count = block.count + 1;
+            size = size + 1;
+        }
+        
+        public long size() { return size; }
+        
+        public long getFirstTimestamp() {
+            Block[] current = blocks;
+            return current.length == 0 ? 0 : current[0].firstTimestamp;
+        }
+        
+        public long getLastTimestamp() {
+            Block[] current = blocks;
+            return current.length == 0 ? 0 : current[current.length - 1].lastTimestamp;
+        }
+        
+        // Heap held by the encoded words (block headers excluded)
+        public long getEncodedBytes() {
+            long bytes = 0;
+            for (Block block : blocks) {
+                bytes += 8L * block.words.length;
+            }
+            return bytes;
+        }
+        
+        public Cursor cursor() {
+            return new Cursor(blocks, Long.MIN_VALUE);
+        }
+        
+        // Starts at the first tick at or after fromTimestamp; whole blocks
+        // that end earlier are skipped without decoding
+        public Cursor cursor(long fromTimestamp) {
+            return new Cursor(blocks, fromTimestamp);
+        }
+        
+        // Sequential decoder over a snapshot of the history taken when created:
+        //   for (Cursor c = history.cursor(); c.next(); ) use(c.timestamp(), c.price());
+        static final class Cursor {
+            private final Block[] blocks;
+            private final long from;
+            private int blockIndex = -1;
+            private int remaining;
+            private boolean first;
+            private long[] words;
+            private long position;
+            
+            private long timestamp;
+            private long delta;
+            private long bits;
+            private int leading;
+            private int trailing;
+            
+            private Cursor(Block[] blocks, long from) {
+                this.blocks = blocks;
+                this.from = from;
+                int start = 0;
+                while (start < blocks.length && blocks[start].lastTimestamp < from) {
+                    start++;
+                }
+                blockIndex = start - 1;
+            }
+            
+            public boolean next() {
+                while (true) {
+                    if (remaining == 0 && !openNextBlock()) {
+                        return false;
+                    }
+                    decode();
+                    if (timestamp >= from) return true;
+                }
+            }
+            
+            private boolean openNextBlock() {
+                while (++blockIndex < blocks.length) {
+                    Block block = blocks[blockIndex];
+                    remaining = block.count;
+                    words = block.words;
+                    if (remaining > 0) {
+                        position = 0;
+                        first = true;
+                        return true;
+                    }
+                }
+                return false;
+            }
+            
+            private void decode() {
+                remaining--;
+                if (first) {
+                    first = false;
+                    timestamp = readBits(64);
+                    bits = readBits(64);
+                    delta = 0;
+                    leading = -1;
+                    return;
+                }
+                
+                long deltaOfDelta;
+                if (!readBit()) {
+                    deltaOfDelta = 0;
+                } else if (!readBit()) {
+                    deltaOfDelta = signed(readBits(7), 7);
+                } else if (!readBit()) {
+                    deltaOfDelta = signed(readBits(9), 9);
+                } else if (!readBit()) {
+                    deltaOfDelta = signed(readBits(12), 12);
+                } else {
+                    deltaOfDelta = readBits(64);
+                }
+                delta += deltaOfDelta;
+                timestamp += delta;
+                
+                if (readBit()) {
+                    if (readBit()) {
+                        leading = (int) readBits(5);
+                        int significant = (int) readBits(6) + 1;
+                        trailing = 64 - leading - significant;
+                    }
+                    bits ^= readBits(64 - leading - trailing) << trailing;
+                }
+            }
+            
+            private static long signed(long value, int n) {
+                return (value << (64 - n)) >> (64 - n);
+            }
+            
+            private boolean readBit() {
+                boolean bit = (words[(int) (position >>> 6)] << (position & 63)) < 0;
+                position++;
+                return bit;
+            }
+            
+            private long readBits(int n) {
+                int index = (int) (position >>> 6);
+                int used = (int) (position & 63);
+                int available = 64 - used;
+                long result = (words[index] << used) >>> (64 - n);
+                if (n > available) {
+                    result |= words[index + 1] >>> (64 - (n - available));
+                }
+                position += n;
+                return result;
+            }
+            
+            public long timestamp() { return timestamp; }
+            public long priceMinor() { return (long) Double.longBitsToDouble(bits); }
+            public double price() { return Money.toDouble(priceMinor()); }
+        }
+    }
+
+    // ==================== PRICE MODELS ====================
+    
+    // Per-symbol model parameters, stored as parallel primitive arrays indexed
+    // by the symbol's position in MarketData. Rates are per tick.
+    static class PriceParams {
+        final double[] drift;
+        final double[] volatility;
+        final double[] jumpIntensity;
+        final double[] jumpMean;
+        final double[] jumpVolatility;
+        
+        PriceParams(int size) {
+            drift = new double[size];
+            volatility = new double[size];
+            jumpIntensity = new double[size];
+            jumpMean = new double[size];
+            jumpVolatility = new double[size];
+        }
+    }
+    
+    // A model fills returns[0..n) with one tick of log returns for every symbol.
+    // Random draws are taken up front so the arithmetic runs as straight loops
+    // over primitive arrays that C2 can unroll and vectorize.
+    interface PriceModel {
+        void nextReturns(PriceParams params, double[] returns, int n, SplittableRandom rng);
+        
+        static PriceModel forName(String name) {
+            switch (name.trim().toLowerCase()) {
+                case "jump":
+                case "jump-diffusion":
+                    return new JumpDiffusion();
+                case "regime":
+                case "regime-switching":
+                    return new RegimeSwitching(0.01, 0.05, 2.5);
+                default:
+                    return new GeometricBrownianMotion();
+            }
+        }
+        
+        // Box-Muller; draws come in pairs so the stream stays deterministic per seed
+        static void fillGaussian(double[] out, int n, SplittableRandom rng) {
+            for (int i = 0; i < n; i += 2) {
+                double u1 = 1.0 - rng.nextDouble();
+                double u2 = rng.nextDouble();
+                double r = Math.sqrt(-2.0 * Math.log(u1));
+                out[i] = r * Math.cos(2 * Math.PI * u2);
+                if (i + 1 < n) {
+                    out[i + 1] = r * Math.sin(2 * Math.PI * u2);
+                }
+            }
+        }
+        
+        static void fillUniform(double[] out, int n, SplittableRandom rng) {
+            for (int i = 0; i < n; i++) {
+                out[i] = rng.nextDouble();
+            }
+        }
+    }
+    
+    static class GeometricBrownianMotion implements PriceModel {
+        protected double[] shocks = new double[0];
+        
+        @Override
+        public void nextReturns(PriceParams params, double[] returns, int n, SplittableRandom rng) {
+            if (shocks.length < n) shocks = new double[n];
+            PriceModel.fillGaussian(shocks, n, rng);
+            
+            double[] drift = params.drift;
+            double[] sigma = params.volatility;
+            double[] z = shocks;
+            for (int i = 0; i < n; i++) {
+                returns[i] = drift[i] - 0.5 * sigma[i] * sigma[i] + sigma[i] * z[i];
+            }
+        }
+    }
+    
+    // Merton jump-diffusion: GBM plus Bernoulli-per-tick jumps with normal log size.
+    // The drift is compensated so jumps do not change the expected return.
+    static class JumpDiffusion extends GeometricBrownianMotion {
+        private double[] arrivals = new double[0];
+        private double[] jumpShocks = new double[0];
+        
+        @Override
+        public void nextReturns(PriceParams params, double[] returns, int n, SplittableRandom rng) {
+            super.nextReturns(params, returns, n, rng);
+            if (arrivals.length < n) {
+                arrivals = new double[n];
+                jumpShocks = new double[n];
+            }
+            PriceModel.fillUniform(arrivals, n, rng);
+            PriceModel.fillGaussian(jumpShocks, n, rng);
+            
+            double[] lambda = params.jumpIntensity;
+            double[] mu = params.jumpMean;
+            double[] delta = params.jumpVolatility;
+            double[] u = arrivals;
+            double[] z = jumpShocks;
+            for (int i = 0; i < n; i++) {
+                double compensator = lambda[i] * (Math.exp(mu[i] + 0.5 * delta[i] * delta[i]) - 1);
+                double jump = u[i] < lambda[i] ? mu[i] + delta[i] * z[i] : 0.0;
+                returns[i] += jump - compensator;
+            }
+        }
+    }
+    
+    // Two-state Markov regime model: each symbol flips between a calm and a
+    // turbulent regime, and the turbulent regime scales volatility.
+    static class RegimeSwitching implements PriceModel {
+        private final double enterTurbulent;
+        private final double leaveTurbulent;
+        private final double turbulentScale;
+        private double[] scale = new double[0];
+        private double[] shocks = new double[0];
+        private double[] switches = new double[0];
+        
+        RegimeSwitching(double enterTurbulent, double leaveTurbulent, double turbulentScale) {
+            this.enterTurbulent = enterTurbulent;
+            this.leaveTurbulent = leaveTurbulent;
+            this.turbulentScale = turbulentScale;
+        }
+        
+        @Override
+        public void nextReturns(PriceParams params, double[] returns, int n, SplittableRandom rng) {
+            if (scale.length < n) {
+                scale = new double[n];
+                shocks = new double[n];
+                switches = new double[n];
+                Arrays.fill(scale, 1.0);
+            }
+            PriceModel.fillUniform(switches, n, rng);
+            PriceModel.fillGaussian(shocks, n, rng);
+            
+            double[] k = scale;
+            double[] u = switches;
+            for (int i = 0; i < n; i++) {
+                boolean turbulent = k[i] > 1.0;
+                double p = turbulent ? leaveTurbulent : enterTurbulent;
+                boolean flip = u[i] < p;
+                k[i] = (turbulent != flip) ? turbulentScale : 1.0;
+            }
+            
+            double[] drift = params.drift;
+            double[] sigma = params.volatility;
+            double[] z = shocks;
+            for (int i = 0; i < n; i++) {
+                double s = sigma[i] * k[i];
+                returns[i] = drift[i] - 0.5 * s * s + s * z[i];
+            }
+        }
+    }
+    
+    // Drives all stocks from one seeded random stream, one batch per tick, so
+    // the same seed, model, parameters and tick period replay the same run.
+    // Parameters are quoted per 2 s reference step (the original tick) and
+    // scaled to the actual tick period: drift and jump intensity by dt,
+    // volatility by sqrt(dt).
+    static class PriceSimulator {
+        private static final long REFERENCE_STEP_NANOS = 2_000_000_000L;
+        
+        private final Stock[] stocks;
+        private final Map<String, Integer> indexBySymbol = new HashMap<>();
+        private final double[] prices;
+        private final double[] returns;
+        private final PriceParams base;
+        private final PriceParams params;
+        private double timeStep = 1.0;
+        private final SplittableRandom rng;
+        private final long seed;
+        private PriceModel model;
+        
+        PriceSimulator(Collection<Stock> universe, PriceModel model, long seed) {
+            int n = universe.size();
+            this.stocks = universe.toArray(new Stock[0]);
+            this.prices = new double[n];
+            this.returns = new double[n];
+            this.base = new PriceParams(n);
+            this.params = new PriceParams(n);
+            this.model = model;
+            this.seed = seed;
+            this.rng = new SplittableRandom(seed);
+            
+            for (int i = 0; i < n; i++) {
+                Stock stock = stocks[i];
+                indexBySymbol.put(stock.getSymbol(), i);
+                prices[i] = stock.getCurrentPrice();
+                base.volatility[i] = defaultVolatility(stock.getSector());
+                base.jumpIntensity[i] = 0.002;
+                base.jumpMean[i] = -0.01;
+                base.jumpVolatility[i] = 0.03;
+                rescale(i);
+            }
+        }
+        
+        public void setTickPeriod(long periodNanos) {
+            timeStep = periodNanos / (double) REFERENCE_STEP_NANOS;
+            for (int i = 0; i < stocks.length; i++) {
+                rescale(i);
+            }
+        }
+        
+        private void rescale(int i) {
+            params.drift[i] = base.drift[i] * timeStep;
+            params.volatility[i] = base.volatility[i] * Math.sqrt(timeStep);
+            params.jumpIntensity[i] = Math.min(1.0, base.jumpIntensity[i] * timeStep);
+            params.jumpMean[i] = base.jumpMean[i];
+            params.jumpVolatility[i] = base.jumpVolatility[i];
+        }
+        
+        // Roughly matches the spread of the old uniform +/-1.5% tick move
+        private static double defaultVolatility(String sector) {
+            switch (sector) {
+                case "Technology": return 0.010;
+                case "Automotive": return 0.014;
+                case "E-commerce": return 0.010;
+                case "Finance": return 0.007;
+                case "Healthcare": return 0.006;
+                default: return 0.0087;
+            }
+        }
+        
+        public void setParameters(String symbol, double drift, double volatility) {
+            Integer i = indexBySymbol.get(symbol);
+            if (i == null) return;
+            base.drift[i] = drift;
+            base.volatility[i] = volatility;
+            rescale(i);
+        }
+        
+        public void setJumpParameters(String symbol, double intensity, double mean, double volatility) {
+            Integer i = indexBySymbol.get(symbol);
+            if (i == null) return;
+            base.jumpIntensity[i] = intensity;
+            base.jumpMean[i] = mean;
+            base.jumpVolatility[i] = volatility;
+            rescale(i);
+        }
+        
+        public void tick(TickListener listener) {
+            int n = stocks.length;
+            model.nextReturns(params, returns, n, rng);
+            
+            double[] p = prices;
+            double[] r = returns;
+            for (int i = 0; i < n; i++) {
+                p[i] *= Math.exp(r[i]);
+            }
+            
+            for (int i = 0; i < n; i++) {
+                int volume = rng.nextInt(1000000) + 10000;
+                double oldPrice = stocks[i].getCurrentPrice();
+                stocks[i].updatePrice(p[i], Math.expm1(r[i]) * 100.0, volume);
+                listener.onTick(stocks[i], oldPrice);
+            }
+        }
+        
+        public void setModel(PriceModel model) { this.model = model; }
+        public PriceModel getModel() { return model; }
+        public long getSeed() { return seed; }
+    }
+
+    // ==================== INDICES ====================
+    
+    // Receives every symbol update as it lands, then once per completed market tick
+    interface TickListener {
+        void onTick(Stock stock, double oldPrice);
+        
+        default void onTickComplete() {}
+    }
+    
+    // Sector and whole-market indices, cap-weighted and equal-weighted.
+    // Each index is sum(weight * price) / divisor. A tick only moves one
+    // constituent, so the sum is adjusted by weight * (new - old) instead of
+    // being recomputed over every stock.
+    static class MarketIndices implements TickListener {
+        private static final double BASE_LEVEL = 1000.0;
+        private static final int RESUM_INTERVAL = 10000;
+        
+        private final java.util.List<String> symbols = new ArrayList<>();
+        private final java.util.List<String> names = new ArrayList<>();
+        private final java.util.List<java.util.List<Stock>> constituents = new ArrayList<>();
+        private final java.util.List<double[]> constituentWeights = new ArrayList<>();
+        private final Map<String, Integer> indexBySymbol = new HashMap<>();
+        private double[] aggregate = new double[0];
+        private double[] divisor = new double[0];
+        
+        // For each stock: the indices it belongs to and its weight in each
+        private final Map<String, int[]> membership = new HashMap<>();
+        private final Map<String, double[]> weights = new HashMap<>();
+        private int ticksSinceResum;
+        
+        MarketIndices(Collection<Stock> universe) {
+            Map<String, java.util.List<Stock>> bySector = new LinkedHashMap<>();
+            for (Stock stock : universe) {
+                bySector.computeIfAbsent(stock.getSector(), k -> new ArrayList<>()).add(stock);
+            }
+            
+            java.util.List<Stock> all = new ArrayList<>(universe);
+            define("^MKT", "Market Index", all, true);
+            define("^MKT-EW", "Market Index (EW)", all, false);
+            for (Map.Entry<String, java.util.List<Stock>> entry : bySector.entrySet()) {
+                String code = "^" + entry.getKey().toUpperCase().replaceAll("[^A-Z]", "");
+                define(code, entry.getKey() + " Index", entry.getValue(), true);
+                define(code + "-EW", entry.getKey() + " Index (EW)", entry.getValue(), false);
+            }
+        }
+        
+        // Cap-weighted: weight = implied shares outstanding (marketCap / price).
+        // Equal-weighted: weight = 1 / base price, so each stock contributes its relative move.
+        private void define(String symbol, String name, java.util.List<Stock> members, boolean capWeighted) {
+            int id = symbols.size();
+            symbols.add(symbol);
+            names.add(name);
+            constituents.add(members);
+            indexBySymbol.put(symbol, id);
+            aggregate = Arrays.copyOf(aggregate, id + 1);
+            divisor = Arrays.copyOf(divisor, id + 1);
+            
+            double[] memberWeights = new double[members.size()];
+            double sum = 0;
+            for (int k = 0; k < members.size(); k++) {
+                Stock stock = members.get(k);
+                double weight = capWeighted
+                    ? stock.getMarketCap() / stock.getCurrentPrice()
+                    : 1.0 / stock.getCurrentPrice();
+                memberWeights[k] = weight;
+                sum += weight * stock.getCurrentPrice();
+                
+                int[] ids = membership.getOrDefault(stock.getSymbol(), new int[0]);
+                double[] w = weights.getOrDefault(stock.getSymbol(), new double[0]);
+                ids = Arrays.copyOf(ids, ids.length + 1);
+                w = Arrays.copyOf(w, w.length + 1);
+                ids[ids.length - 1] = id;
+                w[w.length - 1] = weight;
+                membership.put(stock.getSymbol(), ids);
+                weights.put(stock.getSymbol(), w);
+            }
+            constituentWeights.add(memberWeights);
+            aggregate[id] = sum;
+            divisor[id] = sum / BASE_LEVEL;
+        }
+        
+        // The feed thread updates aggregate[] while the EDT reads levels, so
+        // both sides go through the monitor, as TopMovers does
+        @Override
+        public synchronized void onTick(Stock stock, double oldPrice) {
+            int[] ids = membership.get(stock.getSymbol());
+            if (ids == null) return;
+            double[] w = weights.get(stock.getSymbol());
+            double delta = stock.getCurrentPrice() - oldPrice;
+            for (int k = 0; k < ids.length; k++) {
+                aggregate[ids[k]] += w[k] * delta;
+            }
+        }
+        
+        // Re-sum occasionally so floating point error from the deltas cannot accumulate
+        @Override
+        public synchronized void onTickComplete() {
+            if (++ticksSinceResum < RESUM_INTERVAL) return;
+            ticksSinceResum = 0;
+            for (int id = 0; id < symbols.size(); id++) {
+                java.util.List<Stock> members = constituents.get(id);
+                double[] w = constituentWeights.get(id);
+                double sum = 0;
+                for (int k = 0; k < members.size(); k++) {
+                    sum += w[k] * members.get(k).getCurrentPrice();
+                }
+                aggregate[id] = sum;
+            }
+        }
+        
+        public java.util.List<String> getSymbols() { return Collections.unmodifiableList(symbols); }
+        public boolean contains(String symbol) { return indexBySymbol.containsKey(symbol); }
+        
+        public String getName(String symbol) {
+            return names.get(indexBySymbol.get(symbol));
+        }
+        
+        public synchronized double getLevel(String symbol) {
+            int id = indexBySymbol.get(symbol);
+            return aggregate[id] / divisor[id];
+        }
+        
+        // Change since the index was based at 1000
+        public double getChangePercent(String symbol) {
+            return (getLevel(symbol) / BASE_LEVEL - 1) * 100.0;
+        }
+        
+        public int getConstituentCount(String symbol) {
+            return constituents.get(indexBySymbol.get(symbol)).size();
+        }
+    }
+
+    // Top gainers, losers and most active, kept in ordered trees that are
+    // updated per symbol tick (remove + reinsert, O(log n)), so nothing is
+    // re-sorted when the UI asks for the leaderboard.
+    static class TopMovers implements TickListener {
+        private static class Entry {
+            final Stock stock;
+            double change;
+            int volume;
+            
+            Entry(Stock stock) {
+                this.stock = stock;
+                this.change = stock.getDailyChange();
+                this.volume = stock.getVolume();
+            }
+        }
+        
+        private static final Comparator<Entry> BY_CHANGE = (a, b) -> {
+            int c = Double.compare(a.change, b.change);
+            return c != 0 ? c : a.stock.getSymbol().compareTo(b.stock.getSymbol());
+        };
+        private static final Comparator<Entry> BY_VOLUME = (a, b) -> {
+            int c = Integer.compare(a.volume, b.volume);
+            return c != 0 ? c : a.stock.getSymbol().compareTo(b.stock.getSymbol());
+        };
+        
+        private final Map<String, Entry> entries = new HashMap<>();
+        private final TreeSet<Entry> byChange = new TreeSet<>(BY_CHANGE);
+        private final TreeSet<Entry> byVolume = new TreeSet<>(BY_VOLUME);
+        
+        TopMovers(Collection<Stock> universe) {
+            for (Stock stock : universe) {
+                Entry entry = new Entry(stock);
+                entries.put(stock.getSymbol(), entry);
+                byChange.add(entry);
+                byVolume.add(entry);
+            }
+        }
+        
+        @Override
+        public synchronized void onTick(Stock stock, double oldPrice) {
+            Entry entry = entries.get(stock.getSymbol());
+            if (entry == null) return;
+            
+            if (entry.change != stock.getDailyChange()) {
+                byChange.remove(entry);
+                entry.change = stock.getDailyChange();
+                byChange.add(entry);
+            }
+            if (entry.volume != stock.getVolume()) {
+                byVolume.remove(entry);
+                entry.volume = stock.getVolume();
+                byVolume.add(entry);
+            }
+        }
+        
+        public synchronized java.util.List<Stock> getTopGainers(int n) {
+            return take(byChange.descendingIterator(), n);
+        }
+        
+        public synchronized java.util.List<Stock> getTopLosers(int n) {
+            return take(byChange.iterator(), n);
+        }
+        
+        public synchronized java.util.List<Stock> getMostActive(int n) {
+            return take(byVolume.descendingIterator(), n);
+        }
+        
+        private static java.util.List<Stock> take(Iterator<Entry> it, int n) {
+            java.util.List<Stock> result = new ArrayList<>(n);
+            while (it.hasNext() && result.size() < n) {
+                result.add(it.next().stock);
+            }
+            return result;
+        }
+    }
+
+    // ==================== CANDLES ====================
+    
+    // Each resolution keeps a fixed retention window; its ring never holds
+    // more than retention / millis candles
+    enum Resolution {
+        SECOND_1("1s", 1000L, 3_600_000L),             // 1 hour
+        MINUTE_1("1m", 60_000L, 86_400_000L),          // 1 day
+        MINUTE_5("5m", 300_000L, 604_800_000L),        // 1 week
+        HOUR_1("1h", 3_600_000L, 7_776_000_000L),      // 90 days
+        DAY_1("1d", 86_400_000L, 315_360_000_000L);    // 10 years
+        
+        final String label;
+        final long millis;
+        final int defaultCapacity;
+        
+        Resolution(String label, long millis, long retentionMillis) {
+            this.label = label;
+            this.millis = millis;
+            this.defaultCapacity = (int) (retentionMillis / millis);
+        }
+    }
+    
+    // Ring of OHLCV candles at one resolution, stored column-wise in primitive
+    // arrays. It starts small and doubles as candles arrive, up to capacity,
+    // so a symbol that rarely trades costs a few hundred bytes rather than
+    // its full retention window. Once full, the oldest candle is
+    // overwritten, so old history survives only at the coarser resolutions.
+    static class CandleSeries {
+        private static final int INITIAL_CAPACITY = 16;
+        
+        final Resolution resolution;
+        private final int capacity;
+        private long[] start;
+        private double[] open;
+        private double[] high;
+        private double[] low;
+        private double[] close;
+        private long[] volume;
+        private int head = -1;   // slot of the newest candle
+        private int size;
+        
+        CandleSeries(Resolution resolution, int capacity) {
+            this.resolution = resolution;
+            this.capacity = capacity;
+            int initial = Math.min(capacity, INITIAL_CAPACITY);
+            start = new long[initial];
+            open = new double[initial];
+            high = new double[initial];
+            low = new double[initial];
+            close = new double[initial];
+            volume = new long[initial];
+        }
+        
+        // O(1): either extends the newest candle or opens the next slot
+        synchronized void add(long time, double price, long tickVolume) {
+            long bucket = time - Math.floorMod(time, resolution.millis);
+            if (head >= 0 && bucket <= start[head]) {
+                high[head] = Math.max(high[head], price);
+                low[head] = Math.min(low[head], price);
+                close[head] = price;
+                volume[head] += tickVolume;
+                return;
+            }
+            if (size == start.length && size < capacity) {
+                grow();
+            }
+            head = (head + 1) % start.length;
+            if (size < start.length) size++;
+            start[head] = bucket;
+            open[head] = price;
+            high[head] = price;
+            low[head] = price;
+            close[head] = price;
+            volume[head] = tickVolume;
+        }
+        
+        // Only called when full: unrolls the ring oldest first into arrays
+        // twice the size, capped at capacity
+        private void grow() {
+            int length = (int) Math.min(capacity, 2L * start.length);
+            int first = slot(0);
+            start = unroll(start, new long[length], first);
+            open = unroll(open, new double[length], first);
+            high = unroll(high, new double[length], first);
+            low = unroll(low, new double[length], first);
+            close = unroll(close, new double[length], first);
+            volume = unroll(volume, new long[length], first);
+            head = size - 1;
+        }
+        
+        private static <T> T unroll(T from, T to, int first) {
+            int length = java.lang.reflect.Array.getLength(from);
+            System.arraycopy(from, first, to, 0, length - first);
+            System.arraycopy(from, 0, to, length - first, first);
+            return to;
+        }
+        
+        synchronized int size() { return size; }
+        
+        synchronized long oldestStart() {
+            return size == 0 ? Long.MAX_VALUE : start[slot(0)];
+        }
+        
+        // Bucket starts are increasing from oldest to newest, so binary search
+        private int firstStartAtLeast(long time) {
+            int lo = 0;
+            int hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (start[slot(mid)] < time) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+        
+        // i = 0 is the oldest retained candle
+        private int slot(int i) {
+            return Math.floorMod(head - size + 1 + i, start.length);
+        }
+        
+        // Copies the candles overlapping [from, to] into a fresh snapshot
+        synchronized Candles range(long from, long to) {
+            int first = firstStartAtLeast(from - Math.floorMod(from, resolution.millis));
+            int last = firstStartAtLeast(to + 1) - 1;
+            
+            Candles result = new Candles(resolution, Math.max(0, last - first + 1));
+            for (int i = first, k = 0; i <= last; i++, k++) {
+                int j = slot(i);
+                result.start[k] = start[j];
+                result.open[k] = open[j];
+                result.high[k] = high[j];
+                result.low[k] = low[j];
+                result.close[k] = close[j];
+                result.volume[k] = volume[j];
+            }
+            return result;
+        }
+    }
+    
+    // Snapshot handed to charts and backtests
+    static class Candles {
+        final Resolution resolution;
+        final long[] start;
+        final double[] open;
+        final double[] high;
+        final double[] low;
+        final double[] close;
+        final long[] volume;
+        
+        Candles(Resolution resolution, int count) {
+            this.resolution = resolution;
+            start = new long[count];
+            open = new double[count];
+            high = new double[count];
+            low = new double[count];
+            close = new double[count];
+            volume = new long[count];
+        }
+        
+        public int size() { return start.length; }
+    }
+    
+    // Rolls every tick into all resolutions at once: a constant five bucket
+    // updates per tick, never a rescan of the tick history.
+    static class CandleStore implements TickListener {
+        private final Map<String, CandleSeries[]> series = new HashMap<>();
+        
+        CandleStore(Collection<Stock> universe) {
+            for (Stock stock : universe) {
+                Resolution[] resolutions = Resolution.values();
+                CandleSeries[] perSymbol = new CandleSeries[resolutions.length];
+                for (int i = 0; i < resolutions.length; i++) {
+                    perSymbol[i] = new CandleSeries(resolutions[i], resolutions[i].defaultCapacity);
+                }
+                series.put(stock.getSymbol(), perSymbol);
+            }
+        }
+        
+        @Override
+        public void onTick(Stock stock, double oldPrice) {
+            CandleSeries[] perSymbol = series.get(stock.getSymbol());
+            if (perSymbol == null) return;
+            long now = System.currentTimeMillis();
+            for (CandleSeries candles : perSymbol) {
+                candles.add(now, stock.getCurrentPrice(), stock.getVolume());
+            }
+        }
+        
+        public Candles getCandles(String symbol, Resolution resolution, long from, long to) {
+            CandleSeries[] perSymbol = series.get(symbol);
+            if (perSymbol == null) return new Candles(resolution, 0);
+            return perSymbol[resolution.ordinal()].range(from, to);
+        }
+        
+        // Finest resolution that still covers the range and fits within maxPoints
+        public Candles getCandles(String symbol, long from, long to, int maxPoints) {
+            CandleSeries[] perSymbol = series.get(symbol);
+            if (perSymbol == null) return new Candles(Resolution.DAY_1, 0);
+            for (CandleSeries candles : perSymbol) {
+                boolean covers = candles.oldestStart() <= from;
+                boolean fits = (to - from) / candles.resolution.millis <= maxPoints;
+                if (covers && fits) {
+                    return candles.range(from, to);
+                }
+            }
+            return perSymbol[perSymbol.length - 1].range(from, to);
+        }
+    }
+
+    // ==================== CORRELATION ====================
+    
+    // Rolling covariance and correlation of per-tick log returns over the
+    // last `window` ticks. Keeps running sums (sum r_i and sum r_i * r_j over
+    // the packed upper triangle); each tick adds the new return vector and
+    // subtracts the one leaving the window, O(n^2) with no rescan of history.
+    // Large universes update row blocks of the triangle in parallel.
+    static class CorrelationMatrix implements TickListener {
+        private static final int PARALLEL_THRESHOLD = 128;
+        private static final int RESUM_INTERVAL = 10000;
+        
+        private final String[] symbols;
+        private final Map<String, Integer> indexBySymbol = new HashMap<>();
+        private final int n;
+        private final int window;
+        private final double[][] history;
+        private final double[] current;
+        private final double[] sum;
+        private final double[] cross;
+        private final int[] rowOffset;
+        private final int[] blockStart;
+        private double[] leaving;
+        private int head;
+        private int count;
+        private int ticksSinceResum;
+        private boolean parallel = true;
+        
+        CorrelationMatrix(Collection<Stock> universe, int window) {
+            if (window < 2) {
+                throw new IllegalArgumentException("Window must be at least 2 ticks: " + window);
+            }
+            this.n = universe.size();
+            this.window = window;
+            this.symbols = new String[n];
+            int i = 0;
+            for (Stock stock : universe) {
+                symbols[i] = stock.getSymbol();
+                indexBySymbol.put(stock.getSymbol(), i++);
+            }
+            history = new double[window][n];
+            current = new double[n];
+            sum = new double[n];
+            rowOffset = new int[n];
+            long cells = 0;
+            for (i = 0; i < n; i++) {
+                rowOffset[i] = (int) cells - i;
+                cells += n - i;
+            }
+            cross = new double[(int) cells];
+            
+            // Row i of the triangle holds n - i cells; cut rows into blocks of
+            // roughly equal cell counts so parallel workers finish together
+            int blocks = Math.max(1, Math.min(n, ForkJoinPool.getCommonPoolParallelism() * 4));
+            java.util.List<Integer> starts = new ArrayList<>();
+            long target = cells / blocks + 1;
+            long filled = 0;
+            starts.add(0);
+            for (i = 0; i < n; i++) {
+                filled += n - i;
+                if (filled >= target && i + 1 < n) {
+                    starts.add(i + 1);
+                    filled = 0;
+                }
+            }
+            starts.add(n);
+            blockStart = starts.stream().mapToInt(Integer::intValue).toArray();
+        }
+        
+        @Override
+        public void onTick(Stock stock, double oldPrice) {
+            Integer i = indexBySymbol.get(stock.getSymbol());
+            if (i != null && oldPrice > 0) {
+                current[i] = Math.log(stock.getCurrentPrice() / oldPrice);
+            }
+        }
+        
+        @Override
+        public synchronized void onTickComplete() {
+            double[] slot = history[head];
+            if (count == window) {
+                leaving = slot;
+            } else {
+                leaving = null;
+                count++;
+            }
+            
+            if (++ticksSinceResum >= RESUM_INTERVAL) {
+                System.arraycopy(current, 0, slot, 0, n);
+                resum();
+            } else {
+                for (int i = 0; i < n; i++) {
+                    sum[i] += leaving == null ? current[i] : current[i] - leaving[i];
+                }
+                if (parallel && n >= PARALLEL_THRESHOLD) {
+                    java.util.stream.IntStream.range(0, blockStart.length - 1).parallel()
+                        .forEach(b -> updateRows(blockStart[b], blockStart[b + 1]));
+                } else {
+                    updateRows(0, n);
+                }
+                System.arraycopy(current, 0, slot, 0, n);
+            }
+            head = (head + 1) % window;
+            Arrays.fill(current, 0.0);
+        }
+        
+        private void updateRows(int fromRow, int toRow) {
+            double[] a = current;
+            double[] b = leaving;
+            double[] c = cross;
+            for (int i = fromRow; i < toRow; i++) {
+                int base = rowOffset[i];
+                double ai = a[i];
+                if (b == null) {
+                    for (int j = i; j < n; j++) {
+                        c[base + j] += ai * a[j];
+                    }
+                } else {
+                    double bi = b[i];
+                    for (int j = i; j < n; j++) {
+                        c[base + j] += ai * a[j] - bi * b[j];
+                    }
+                }
+            }
+        }
+        
+        // Rebuild the sums from the window so floating-point error from
+        // add/subtract pairs cannot accumulate without bound
+        private void resum() {
+            Arrays.fill(sum, 0.0);
+            Arrays.fill(cross, 0.0);
+            for (int t = 0; t < count; t++) {
+                double[] r = history[t];
+                for (int i = 0; i < n; i++) {
+                    sum[i] += r[i];
+                    int base = rowOffset[i];
+                    for (int j = i; j < n; j++) {
+                        cross[base + j] += r[i] * r[j];
+                    }
+                }
+            }
+            ticksSinceResum = 0;
+        }
+        
+        private double covariance(int i, int j) {
+            if (count < 2) return 0.0;
+            int lo = Math.min(i, j);
+            int hi = Math.max(i, j);
+            return (cross[rowOffset[lo] + hi] - sum[i] * sum[j] / count) / (count - 1);
+        }
+        
+        private double correlation(int i, int j) {
+            if (i == j) return 1.0;
+            double varI = covariance(i, i);
+            double varJ = covariance(j, j);
+            if (varI <= 0 || varJ <= 0) return 0.0;
+            return Math.max(-1.0, Math.min(1.0, covariance(i, j) / Math.sqrt(varI * varJ)));
+        }
+        
+        public synchronized double getCovariance(String a, String b) {
+            Integer i = indexBySymbol.get(a);
+            Integer j = indexBySymbol.get(b);
+            return i == null || j == null ? Double.NaN : covariance(i, j);
+        }
+        
+        public synchronized double getCorrelation(String a, String b) {
+            Integer i = indexBySymbol.get(a);
+            Integer j = indexBySymbol.get(b);
+            return i == null || j == null ? Double.NaN : correlation(i, j);
+        }
+        
+        // Full n x n copies in getSymbols() order, for heatmaps and reports
+        public synchronized double[][] getCorrelationMatrix() {
+            double[][] matrix = new double[n][n];
+            for (int i = 0; i < n; i++) {
+                for (int j = i; j < n; j++) {
+                    matrix[i][j] = matrix[j][i] = correlation(i, j);
+                }
+            }
+            return matrix;
+        }
+        
+        public synchronized double[][] getCovarianceMatrix() {
+            double[][] matrix = new double[n][n];
+            for (int i = 0; i < n; i++) {
+                for (int j = i; j < n; j++) {
+                    matrix[i][j] = matrix[j][i] = covariance(i, j);
+                }
+            }
+            return matrix;
+        }
+        
+        // One-tick standard deviation of a position set's value, in minor
+        // units: sqrt(w' * Cov * w) with w the value held in each symbol
+        public synchronized double getPortfolioVolatility(Map<String, Long> positionValues) {
+            int m = 0;
+            int[] ids = new int[positionValues.size()];
+            double[] w = new double[ids.length];
+            for (Map.Entry<String, Long> entry : positionValues.entrySet()) {
+                Integer i = indexBySymbol.get(entry.getKey());
+                if (i != null) {
+                    ids[m] = i;
+                    w[m++] = entry.getValue();
+                }
+            }
+            double variance = 0.0;
+            for (int a = 0; a < m; a++) {
+                for (int b = 0; b < m; b++) {
+                    variance += w[a] * w[b] * covariance(ids[a], ids[b]);
+                }
+            }
+            return Math.sqrt(Math.max(0.0, variance));
+        }
+        
+        public void setParallel(boolean parallel) { this.parallel = parallel; }
+        public String[] getSymbols() { return symbols.clone(); }
+        public int getWindow() { return window; }
+        public synchronized int getSampleCount() { return count; }
+    }
+
+    static class Transaction {
+        // DateTimeFormatter is immutable, so one instance serves every row
+        private static final DateTimeFormatter TIME_FORMAT =
+            DateTimeFormatter.ofPattern("HH:mm:ss").withZone(ZoneId.systemDefault());
+        
+        private int id;
+        private String symbol;
+        private String type;
+        private int quantity;
+        private long price;        // minor units
+        private long timestamp;
+        private long totalAmount;  // minor units
+        
+        public Transaction(int id, String symbol, String type, int quantity, 
+                          long price, long totalAmount) {
+            this.id = id;
+            this.symbol = symbol;
+            this.type = type;
+            this.quantity = quantity;
+            this.price = price;
+            this.timestamp = System.currentTimeMillis();
+            this.totalAmount = totalAmount;
+        }
+        
+        public String getFormattedString() {
+            return String.format("%s - %s %d %s @ %s (%s)",
+                               getFormattedTime(), type, quantity, 
+                               symbol, Money.format(price), Money.format(totalAmount));
+        }
+        
+        public String getFormattedTime() {
+            return TIME_FORMAT.format(Instant.ofEpochMilli(timestamp));
+        }
+        
+        public int getId() { return id; }
+        public String getSymbol() { return symbol; }
+        public String getType() { return type; }
+        public int getQuantity() { return quantity; }
+        public long getPrice() { return price; }
+        public long getTimestamp() { return timestamp; }
+        public long getTotalAmount() { return totalAmount; }
+    }
+
+    static class Portfolio {
+        private String userId;
+        private long balance;  // minor units, see Money
+        private Map<String, Integer> holdings;
+        private java.util.List<Transaction> transactions;
+        private int nextTransactionId;
+        private String dataFile = "portfolio.properties";
+        private PersistenceWorker persistence;
+        private AdmissionControl admission;
+        private RateLimiter rateLimiter;
+        
+        public Portfolio(String userId, long initialBalance) {
+            this.userId = userId;
+            this.balance = initialBalance;
+            this.holdings = new HashMap<>();
+            this.transactions = new ArrayList<>();
+            this.nextTransactionId = 1;
+        }
+        
+        public void setDataFile(String dataFile) {
+            this.dataFile = dataFile;
+        }
+        
+        // Trades only mark the portfolio dirty; the worker owns all disk I/O
+        public void setPersistence(PersistenceWorker persistence) {
+            this.persistence = persistence;
+        }
+        
+        public void setAdmission(AdmissionControl admission) {
+            this.rateLimiter = admission != null ? admission.newAccountLimiter() : null;
+            this.admission = admission != null && admission.isEnabled() ? admission : null;
+        }
+        
+        // price is in minor units (Stock.getPriceMinor())
+        public boolean buyStock(String symbol, int quantity, long price) {
+            if (admission != null && !admission.admit(rateLimiter)) {
+                return false;
+            }
+            synchronized (this) {
+                long totalCost = Money.times(price, quantity);
+                
+                if (totalCost > balance) {
+                    return false;
+                }
+                
+                balance = Math.subtractExact(balance, totalCost);
+                holdings.put(symbol, holdings.getOrDefault(symbol, 0) + quantity);
+                
+                Transaction transaction = new Transaction(nextTransactionId++, 
+                    symbol, "BUY", quantity, price, totalCost);
+                transactions.add(transaction);
+            }
+            
+            // Outside the lock: in SYNC mode the writer needs it to snapshot
+            if (persistence != null) {
+                persistence.markDirty(this);
+            }
+            return true;
+        }
+        
+        public boolean sellStock(String symbol, int quantity, long price) {
+            if (admission != null && !admission.admit(rateLimiter)) {
+                return false;
+            }
+            synchronized (this) {
+                if (!holdings.containsKey(symbol) || holdings.get(symbol) < quantity) {
+                    return false;
+                }
+                
+                long totalValue = Money.times(price, quantity);
+                balance = Math.addExact(balance, totalValue);
+                
+                int newQuantity = holdings.get(symbol) - quantity;
+                if (newQuantity == 0) {
+                    holdings.remove(symbol);
+                } else {
+                    holdings.put(symbol, newQuantity);
+                }
+                
+                Transaction transaction = new Transaction(nextTransactionId++, 
+                    symbol, "SELL", quantity, price, totalValue);
+                transactions.add(transaction);
+            }
+            
+            if (persistence != null) {
+                persistence.markDirty(this);
+            }
+            return true;
+        }
+        
+        public synchronized long getPortfolioValue(Map<String, Stock> marketData) {
+            long holdingsValue = 0;
+            for (Map.Entry<String, Integer> entry : holdings.entrySet()) {
+                String symbol = entry.getKey();
+                int quantity = entry.getValue();
+                if (marketData.containsKey(symbol)) {
+                    holdingsValue = Math.addExact(holdingsValue,
+                        Money.times(marketData.get(symbol).getPriceMinor(), quantity));
+                }
+            }
+            return Math.addExact(balance, holdingsValue);
+        }
+        
+        public synchronized Map<String, Long> getHoldingsValue(Map<String, Stock> marketData) {
+            Map<String, Long> holdingsValue = new HashMap<>();
+            for (Map.Entry<String, Integer> entry : holdings.entrySet()) {
+                String symbol = entry.getKey();
+                int quantity = entry.getValue();
+                if (marketData.containsKey(symbol)) {
+                    holdingsValue.put(symbol, Money.times(marketData.get(symbol).getPriceMinor(), quantity));
+                }
+            }
+            return holdingsValue;
+        }
+        
+        // Captures a consistent copy of the state under the portfolio lock
+        synchronized Properties snapshot() {
+            // Amounts are stored as minor units; "scale" marks the format
+            Properties props = new Properties();
+            props.setProperty("scale", String.valueOf(Money.SCALE));
+            props.setProperty("balance", String.valueOf(balance));
+            props.setProperty("nextTransactionId", String.valueOf(nextTransactionId));
+            
+            // Save holdings
+            StringBuilder holdingsStr = new StringBuilder();
+            for (Map.Entry<String, Integer> entry : holdings.entrySet()) {
+                holdingsStr.append(entry.getKey()).append(":").append(entry.getValue()).append(";");
+            }
+            props.setProperty("holdings", holdingsStr.toString());
+            
+            // Save transactions
+            StringBuilder transStr = new StringBuilder();
+            for (Transaction t : transactions) {
+                transStr.append(t.getSymbol()).append(",")
+                        .append(t.getType()).append(",")
+                        .append(t.getQuantity()).append(",")
+                        .append(t.getTotalAmount()).append(";");
+            }
+            props.setProperty("transactions", transStr.toString());
+            return props;
+        }
+        
+        // Writes to a temp file and renames it so a crash never leaves a torn file
+        void saveToFile() {
+            Properties props = snapshot();
+            Path target = Paths.get(dataFile).toAbsolutePath();
+            Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+            try {
+                try (OutputStream out = Files.newOutputStream(temp)) {
+                    props.store(out, "Portfolio Data");
+                }
+                try {
+                    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING,
+                               StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException e) {
+                System.err.println("Error saving portfolio: " + e.getMessage());
+            }
+        }
+        
+        // default_user keeps the original portfolio.properties; every other
+        // user gets a file of its own so instances sharing a directory never
+        // write over each other's ledgers
+        static String defaultDataFile(String userId) {
+            if (userId.equals("default_user")) {
+                return "portfolio.properties";
+            }
+            return "portfolio-" + userId.replaceAll("[^A-Za-z0-9_.-]", "_") + ".properties";
+        }
+        
+        public static Portfolio loadFromFile(String userId) {
+            return loadFromFile(userId, defaultDataFile(userId));
+        }
+        
+        // Reads dataFile and keeps saving to it
+        public static Portfolio loadFromFile(String userId, String dataFile) {
+            Portfolio portfolio = readFile(userId, new File(dataFile));
+            portfolio.setDataFile(dataFile);
+            return portfolio;
+        }
+        
+        private static Portfolio readFile(String userId, File file) {
+            if (!file.exists()) {
+                return new Portfolio(userId, Money.of(10000));
+            }
+            
+            try {
+                Properties props = new Properties();
+                try (InputStream in = new FileInputStream(file)) {
+                    props.load(in);
+                }
+                
+                // Files without "scale" predate fixed-point and hold a decimal balance
+                long balance;
+                String scale = props.getProperty("scale");
+                if (scale != null) {
+                    balance = Money.rescale(Long.parseLong(props.getProperty("balance", "0")),
+                                            Integer.parseInt(scale));
+                } else {
+                    balance = Money.parse(props.getProperty("balance", "10000.00"));
+                }
+                Portfolio portfolio = new Portfolio(userId, balance);
+                portfolio.nextTransactionId = Integer.parseInt(props.getProperty("nextTransactionId", "1"));
+                
+                // Load holdings
+                String holdingsStr = props.getProperty("holdings", "");
+                if (!holdingsStr.isEmpty()) {
+                    String[] holdingsArr = holdingsStr.split(";");
+                    for (String holding : holdingsArr) {
+                        if (!holding.isEmpty()) {
+                            String[] parts = holding.split(":");
+                            if (parts.length == 2) {
+                                portfolio.holdings.put(parts[0], Integer.parseInt(parts[1]));
+                            }
+                        }
+                    }
+                }
+                
+                return portfolio;
+            } catch (IOException | ArithmeticException | NumberFormatException e) {
+                System.err.println("Error loading portfolio: " + e.getMessage());
+                return new Portfolio(userId, Money.of(10000));
+            }
+        }
+        
+        public String getUserId() { return userId; }
+        public synchronized long getBalance() { return balance; }
+        public synchronized int getQuantity(String symbol) { return holdings.getOrDefault(symbol, 0); }
+        // A copy: trades may change the live map from other threads
+        public synchronized Map<String, Integer> getHoldings() { return new HashMap<>(holdings); }
+        public java.util.List<Transaction> getTransactions() { return transactions; }
+        public synchronized int getTransactionCount() { return transactions.size(); }
+        public synchronized Transaction getTransaction(int index) { return transactions.get(index); }
+    }
+
+    // Write-behind persistence: trades mark portfolios dirty and a single
+    // background thread coalesces them into file writes.
+    //   ASYNC   - flush as soon as the writer thread is free
+    //   BATCHED - flush every flushIntervalMs (a crash loses at most one window)
+    //   SYNC    - the trading thread waits until the writer has flushed
+    //             (never the EDT, which only hands the flush off)
+    static class PersistenceWorker {
+        enum DurabilityMode { ASYNC, BATCHED, SYNC }
+        
+        private final DurabilityMode mode;
+        private final long flushIntervalMs;
+        private final ScheduledExecutorService writer;
+        private final Set<Portfolio> dirty = ConcurrentHashMap.newKeySet();
+        private final AtomicBoolean flushQueued = new AtomicBoolean(false);
+        private final AtomicLong pendingChanges = new AtomicLong();
+        private final AtomicLong flushCount = new AtomicLong();
+        private volatile boolean shutdown;
+        
+        public PersistenceWorker(DurabilityMode mode, long flushIntervalMs) {
+            this.mode = mode;
+            this.flushIntervalMs = flushIntervalMs;
+            this.writer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "portfolio-writer");
+                t.setDaemon(true);
+                return t;
+            });
+            if (mode == DurabilityMode.BATCHED) {
+                writer.scheduleWithFixedDelay(this::flushDirty, flushIntervalMs,
+                                              flushIntervalMs, TimeUnit.MILLISECONDS);
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "portfolio-writer-shutdown"));
+        }
+        
+        // -Dportfolio.durability=async|batched|sync -Dportfolio.flushIntervalMs=1000
+        public static PersistenceWorker fromSystemProperties() {
+            DurabilityMode mode = DurabilityMode.BATCHED;
+            String configured = System.getProperty("portfolio.durability");
+            if (configured != null) {
+                try {
+                    mode = DurabilityMode.valueOf(configured.trim().toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Unknown durability mode '" + configured + "', using BATCHED");
+                }
+            }
+            long interval = Math.max(1, Long.getLong("portfolio.flushIntervalMs", 1000L));
+            return new PersistenceWorker(mode, interval);
+        }
+        
+        public void markDirty(Portfolio portfolio) {
+            pendingChanges.incrementAndGet();
+            dirty.add(portfolio);
+            
+            if (shutdown) {
+                flushDirty();
+                return;
+            }
+            
+            // shutdown() can still land between the check above and the hand-off
+            // below; a rejected hand-off is written on the trading thread instead
+            switch (mode) {
+                case ASYNC:
+                    if (flushQueued.compareAndSet(false, true)) {
+                        try {
+                            writer.execute(() -> {
+                                flushQueued.set(false);
+                                flushDirty();
+                            });
+                        } catch (RejectedExecutionException e) {
+                            flushQueued.set(false);
+                            flushDirty();
+                        }
+                    }
+                    break;
+                case SYNC:
+                    // The UI submits trades from workers; should one still arrive on
+                    // the EDT it is handed off without waiting, so Swing never blocks
+                    // on the disk
+                    if (java.awt.EventQueue.isDispatchThread()) {
+                        try {
+                            writer.execute(this::flushDirty);
+                        } catch (RejectedExecutionException e) {
+                            flushDirty();
+                        }
+                        break;
+                    }
+                    try {
+                        writer.submit(this::flushDirty).get();
+                    } catch (RejectedExecutionException e) {
+                        flushDirty();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } catch (ExecutionException e) {
+                        System.err.println("Error saving portfolio: " + e.getCause());
+                    }
+                    break;
+                default:
+                    // BATCHED: picked up by the periodic flush
+                    break;
+            }
+        }
+        
+        // Each dirty portfolio is removed before it is snapshotted, so a trade
+        // that lands mid-write simply re-marks it for the next flush.
+        private synchronized void flushDirty() {
+            long covered = pendingChanges.get();
+            if (covered == 0 && dirty.isEmpty()) {
+                return;
+            }
+            for (Portfolio portfolio : dirty) {
+                dirty.remove(portfolio);
+                portfolio.saveToFile();
+            }
+            pendingChanges.addAndGet(-covered);
+            flushCount.incrementAndGet();
+        }
+        
+        public void shutdown() {
+            if (shutdown) return;
+            shutdown = true;
+            writer.shutdown();
+            try {
+                writer.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            flushDirty();
+        }
+        
+        public DurabilityMode getMode() { return mode; }
+        public long getFlushIntervalMs() { return flushIntervalMs; }
+        public long getPendingChanges() { return pendingChanges.get(); }
+        public int getDirtyCount() { return dirty.size(); }
+        public long getFlushCount() { return flushCount.get(); }
+    }
+
+    // ==================== ORDER ADMISSION ====================
+    
+    // GCRA token bucket: `ratePerSecond` sustained with bursts of `burst`.
+    // The whole state is one theoretical-arrival-time stamp updated by CAS,
+    // so a check is a nanoTime read plus one compare-and-set, lock-free and
+    // allocation-free. A permit may be reserved up to maxDelay in the future,
+    // which makes the stamp itself a FIFO delay queue.
+    static class RateLimiter {
+        private final long intervalNanos;
+        private final long toleranceNanos;
+        private final AtomicLong arrival;
+        
+        RateLimiter(double ratePerSecond, int burst) {
+            if (!(ratePerSecond > 0) || burst < 1) {
+                throw new IllegalArgumentException("Rate and burst must be positive");
+            }
+            this.intervalNanos = Math.max(1, Math.round(1e9 / ratePerSecond));
+            this.toleranceNanos = intervalNanos * (burst - 1);
+            this.arrival = new AtomicLong(System.nanoTime() - toleranceNanos);
+        }
+        
+        // Nanoseconds the caller must wait for its permit, or -1 (nothing
+        // reserved) if that would exceed maxDelayNanos
+        long reserve(long now, long maxDelayNanos) {
+            while (true) {
+                long tat = arrival.get();
+                long wait = tat - toleranceNanos - now;
+                if (wait > maxDelayNanos) return -1;
+                long next = Math.max(tat, now) + intervalNanos;
+                if (arrival.compareAndSet(tat, next)) {
+                    return Math.max(0, wait);
+                }
+            }
+        }
+        
+        // Returns a permit that was reserved but not used
+        void refund() {
+            arrival.addAndGet(-intervalNanos);
+        }
+    }
+    
+    // Order admission in front of Portfolio.buyStock/sellStock: a per-account
+    // and a global RateLimiter. An order over either limit is delayed if its
+    // permit is within maxDelay (the caller parks until its slot), otherwise
+    // shed; the order path then returns false. Counters are LongAdders so
+    // busy traders do not contend on them.
+    //   -Dorders.accountRate / -Dorders.accountBurst   per account, 0 = unlimited
+    //   -Dorders.globalRate / -Dorders.globalBurst     across all accounts
+    //   -Dorders.maxDelayMs                            0 = shed immediately
+    static class AdmissionControl {
+        private final double accountRate;
+        private final int accountBurst;
+        private final RateLimiter global;
+        private final long maxDelayNanos;
+        
+        private final LongAdder admitted = new LongAdder();
+        private final LongAdder delayed = new LongAdder();
+        private final LongAdder shedByAccount = new LongAdder();
+        private final LongAdder shedByGlobal = new LongAdder();
+        private final LongAdder totalDelayNanos = new LongAdder();
+        private final AtomicLong maxDelayObservedNanos = new AtomicLong();
+        
+        AdmissionControl(double accountRate, int accountBurst, double globalRate, int globalBurst,
+                         long maxDelayMs) {
+            this.accountRate = accountRate;
+            this.accountBurst = accountBurst;
+            this.global = globalRate > 0 ? new RateLimiter(globalRate, globalBurst) : null;
+            this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxDelayMs));
+        }
+        
+        public static AdmissionControl fromSystemProperties() {
+            return new AdmissionControl(
+                Double.parseDouble(System.getProperty("orders.accountRate", "0")),
+                Integer.getInteger("orders.accountBurst", 10),
+                Double.parseDouble(System.getProperty("orders.globalRate", "0")),
+                Integer.getInteger("orders.globalBurst", 100),
+                Long.getLong("orders.maxDelayMs", 0L));
+        }
+        
+        public boolean isEnabled() {
+            return accountRate > 0 || global != null;
+        }
+        
+        // One per account, held by the Portfolio; null when accounts are unlimited
+        RateLimiter newAccountLimiter() {
+            return accountRate > 0 ? new RateLimiter(accountRate, accountBurst) : null;
+        }
+        
+        // Must not be called on the EDT or while holding the portfolio lock: it may park
+        boolean admit(RateLimiter account) {
+            long now = System.nanoTime();
+            long wait = 0;
+            if (account != null) {
+                wait = account.reserve(now, maxDelayNanos);
+                if (wait < 0) {
+                    shedByAccount.increment();
+                    return false;
+                }
+            }
+            if (global != null) {
+                long globalWait = global.reserve(now, maxDelayNanos);
+                if (globalWait < 0) {
+                    if (account != null) account.refund();
+                    shedByGlobal.increment();
+                    return false;
+                }
+                wait = Math.max(wait, globalWait);
+            }
+            
+            if (wait > 0) {
+                delayed.increment();
+                totalDelayNanos.add(wait);
+                long seen;
+                while (wait > (seen = maxDelayObservedNanos.get())
+                       && !maxDelayObservedNanos.compareAndSet(seen, wait)) {
+                    // retry
+                }
+                long deadline = now + wait;
+                long remaining;
+                while ((remaining = deadline - System.nanoTime()) > 0) {
+                    java.util.concurrent.locks.LockSupport.parkNanos(remaining);
+                }
+            }
+            admitted.increment();
+            return true;
+        }
+        
+        public long getAdmitted() { return admitted.sum(); }
+        public long getDelayed() { return delayed.sum(); }
+        public long getShedByAccount() { return shedByAccount.sum(); }
+        public long getShedByGlobal() { return shedByGlobal.sum(); }
+        public long getMaxDelayNanos() { return maxDelayObservedNanos.get(); }
+        
+        public double getMeanDelayMillis() {
+            long count = delayed.sum();
+            return count == 0 ? 0.0 : totalDelayNanos.sum() / 1e6 / count;
+        }
+        
+        public String getStatus() {
+            return String.format("%,d admitted, %,d delayed (mean %.2f ms, max %.2f ms), shed %,d account / %,d global",
+                getAdmitted(), getDelayed(), getMeanDelayMillis(), getMaxDelayNanos() / 1e6,
+                getShedByAccount(), getShedByGlobal());
+        }
+    }
+
+    // ==================== REBALANCING ====================
+    
+    // One proposed order; quantity > 0 buys, < 0 sells
+    static class RebalanceTrade {
+        private final String symbol;
+        private final int quantity;
+        private final long price;
+        
+        RebalanceTrade(String symbol, int quantity, long price) {
+            this.symbol = symbol;
+            this.quantity = quantity;
+            this.price = price;
+        }
+        
+        public String getSymbol() { return symbol; }
+        public int getQuantity() { return quantity; }
+        public long getPrice() { return price; }
+        public boolean isBuy() { return quantity > 0; }
+        public long getValue() { return Money.times(price, Math.abs(quantity)); }
+    }
+    
+    static class RebalancePlan {
+        private final java.util.List<RebalanceTrade> trades;
+        private final long portfolioValue;
+        private final long turnover;
+        private final long estimatedCost;
+        private final long misallocation;
+        private final long cashAfter;
+        private final String strategy;
+        private int candidatesSearched;
+        private long elapsedNanos;
+        
+        RebalancePlan(java.util.List<RebalanceTrade> trades, long portfolioValue, long turnover,
+                      long estimatedCost, long misallocation, long cashAfter, String strategy) {
+            this.trades = trades;
+            this.portfolioValue = portfolioValue;
+            this.turnover = turnover;
+            this.estimatedCost = estimatedCost;
+            this.misallocation = misallocation;
+            this.cashAfter = cashAfter;
+            this.strategy = strategy;
+        }
+        
+        // Objective minimised by the search: value left away from target plus cost
+        long score() { return misallocation + estimatedCost; }
+        
+        // Sells come first so their proceeds fund the buys
+        public java.util.List<RebalanceTrade> getTrades() { return trades; }
+        public long getPortfolioValue() { return portfolioValue; }
+        public long getTurnover() { return turnover; }
+        public long getEstimatedCost() { return estimatedCost; }
+        public long getMisallocation() { return misallocation; }
+        public long getCashAfter() { return cashAfter; }
+        public String getStrategy() { return strategy; }
+        public int getCandidatesSearched() { return candidatesSearched; }
+        public long getElapsedNanos() { return elapsedNanos; }
+    }
+    
+    // Turns target weights (or a risk budget) into integer-share trades.
+    // Each candidate applies a no-trade band (skip trades smaller than a
+    // fraction of portfolio value, which cuts turnover) and a rounding rule,
+    // then repairs cash and spends leftovers. Candidates are solved in
+    // parallel and the one with the least misallocation + estimated cost
+    // wins, ties going to lower turnover. Costs are a model of spread and
+    // commission for the search only; Portfolio does not charge them.
+    static class Rebalancer {
+        private static final double[] NO_TRADE_BANDS = { 0, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.02, 0.05 };
+        private static final boolean[] FILL_LEFTOVER_CASH = { false, true };
+        
+        private final double costBps;
+        private final long fixedCostPerTrade;
+        
+        Rebalancer(double costBps, long fixedCostPerTrade) {
+            this.costBps = costBps;
+            this.fixedCostPerTrade = fixedCostPerTrade;
+        }
+        
+        // Portfolio state frozen for one optimisation, as parallel arrays
+        private static class Problem {
+            String[] symbols;
+            long[] price;
+            int[] held;
+            double[] targetValue;
+            long cash;
+            long value;
+            double targetCash;
+        }
+        
+        // targetWeights are fractions of total value (cash + holdings) summing
+        // to at most 1; the rest is held as cash. Held symbols with no target
+        // are sold down to zero.
+        public RebalancePlan toWeights(Portfolio portfolio, Map<String, Stock> market,
+                                       Map<String, Double> targetWeights) {
+            long start = System.nanoTime();
+            double total = 0;
+            for (Map.Entry<String, Double> entry : targetWeights.entrySet()) {
+                if (!market.containsKey(entry.getKey())) {
+                    throw new IllegalArgumentException("Unknown symbol: " + entry.getKey());
+                }
+                if (!(entry.getValue() >= 0)) {
+                    throw new IllegalArgumentException("Negative weight for " + entry.getKey());
+                }
+                total += entry.getValue();
+            }
+            if (total > 1.0 + 1e-9) {
+                throw new IllegalArgumentException(String.format("Weights sum to %.4f, more than 1", total));
+            }
+            
+            Problem problem = snapshot(portfolio, market, targetWeights, total);
+            int candidates = NO_TRADE_BANDS.length * FILL_LEFTOVER_CASH.length;
+            RebalancePlan best = java.util.stream.IntStream.range(0, candidates).parallel()
+                .mapToObj(c -> solve(problem, NO_TRADE_BANDS[c / FILL_LEFTOVER_CASH.length],
+                                     FILL_LEFTOVER_CASH[c % FILL_LEFTOVER_CASH.length]))
+                .min(Comparator.comparingLong(RebalancePlan::score)
+                               .thenComparingLong(RebalancePlan::getTurnover))
+                .get();
+            best.candidatesSearched = candidates;
+            best.elapsedNanos = System.nanoTime() - start;
+            return best;
+        }
+        
+        // budget maps symbols to their share of total risk; converted to
+        // weights using the rolling covariance, then rebalanced as above
+        public RebalancePlan toRiskBudget(Portfolio portfolio, Map<String, Stock> market,
+                                          Map<String, Double> budget, CorrelationMatrix risk) {
+            return toWeights(portfolio, market, riskBudgetWeights(budget, risk));
+        }
+        
+        private static Problem snapshot(Portfolio portfolio, Map<String, Stock> market,
+                                        Map<String, Double> targetWeights, double totalWeight) {
+            Map<String, Integer> holdings;
+            long cash;
+            synchronized (portfolio) {
+                holdings = portfolio.getHoldings();
+                cash = portfolio.getBalance();
+            }
+            
+            Set<String> universe = new LinkedHashSet<>(targetWeights.keySet());
+            for (String symbol : holdings.keySet()) {
+                // Positions the market no longer quotes cannot be priced or traded
+                if (market.containsKey(symbol)) universe.add(symbol);
+            }
+            
+            Problem problem = new Problem();
+            int n = universe.size();
+            problem.symbols = universe.toArray(new String[0]);
+            problem.price = new long[n];
+            problem.held = new int[n];
+            problem.targetValue = new double[n];
+            problem.cash = cash;
+            long value = cash;
+            for (int i = 0; i < n; i++) {
+                String symbol = problem.symbols[i];
+                problem.price[i] = market.get(symbol).getPriceMinor();
+                problem.held[i] = holdings.getOrDefault(symbol, 0);
+                value = Math.addExact(value, Money.times(problem.price[i], problem.held[i]));
+            }
+            problem.value = value;
+            for (int i = 0; i < n; i++) {
+                problem.targetValue[i] = targetWeights.getOrDefault(problem.symbols[i], 0.0) * value;
+            }
+            problem.targetCash = (1.0 - totalWeight) * value;
+            return problem;
+        }
+        
+        private RebalancePlan solve(Problem problem, double band, boolean fillLeftoverCash) {
+            int n = problem.symbols.length;
+            long[] price = problem.price;
+            int[] held = problem.held;
+            int[] quantity = new int[n];
+            double bandValue = band * problem.value;
+            
+            long cash = problem.cash;
+            for (int i = 0; i < n; i++) {
+                double ideal = problem.targetValue[i] / price[i];
+                int q = (int) (fillLeftoverCash ? Math.floor(ideal) : Math.round(ideal));
+                if (Math.abs((double) (q - held[i]) * price[i]) < bandValue) {
+                    q = held[i];
+                }
+                quantity[i] = q;
+                cash = Math.subtractExact(cash, Money.times(price[i], Math.subtractExact(q, held[i])));
+            }
+            
+            // Cash repair: trim the largest buys until the plan is affordable
+            if (cash < 0) {
+                Integer[] buys = byDescending(n, i -> quantity[i] > held[i]
+                    ? (double) (quantity[i] - held[i]) * price[i] : -1);
+                for (int k = 0; k < n && cash < 0; k++) {
+                    int i = buys[k];
+                    if (quantity[i] <= held[i]) break;
+                    int trim = (int) Math.min(quantity[i] - held[i], (-cash + price[i] - 1) / price[i]);
+                    quantity[i] -= trim;
+                    cash = Math.addExact(cash, Money.times(price[i], trim));
+                }
+            }
+            
+            // Spend what is left on the most underweight names, one share each
+            if (fillLeftoverCash && cash > 0) {
+                Integer[] under = byDescending(n, i -> problem.targetValue[i] - (double) quantity[i] * price[i]);
+                for (int k = 0; k < n; k++) {
+                    int i = under[k];
+                    double shortfall = problem.targetValue[i] - (double) quantity[i] * price[i];
+                    if (shortfall <= 0) break;
+                    // Buying only helps if it leaves the position closer to target than it costs
+                    double benefit = Math.min(price[i], shortfall) - Math.max(0, price[i] - shortfall)
+                                     - tradeCost(1, price[i], quantity[i] == held[i]);
+                    if (price[i] <= cash && benefit > 0) {
+                        quantity[i]++;
+                        cash = Math.subtractExact(cash, price[i]);
+                    }
+                }
+            }
+            
+            java.util.List<RebalanceTrade> sells = new ArrayList<>();
+            java.util.List<RebalanceTrade> buys = new ArrayList<>();
+            double cost = 0;
+            double misallocation = Math.abs(cash - problem.targetCash);
+            long turnover = 0;
+            for (int i = 0; i < n; i++) {
+                int delta = quantity[i] - held[i];
+                misallocation += Math.abs((double) quantity[i] * price[i] - problem.targetValue[i]);
+                if (delta == 0) continue;
+                cost += tradeCost(Math.abs(delta), price[i], true);
+                turnover = Math.addExact(turnover, Money.times(price[i], Math.abs(delta)));
+                (delta > 0 ? buys : sells).add(new RebalanceTrade(problem.symbols[i], delta, price[i]));
+            }
+            sells.addAll(buys);
+            // Each misplaced unit of value is counted once as excess and once as shortfall
+            return new RebalancePlan(sells, problem.value, turnover, Math.round(cost),
+                                     Math.round(misallocation / 2), cash,
+                                     String.format("band %.2f%%, %s", band * 100,
+                                                   fillLeftoverCash ? "floor + fill" : "nearest"));
+        }
+        
+        private double tradeCost(int shares, long price, boolean newOrder) {
+            return (double) shares * price * costBps / 10_000.0 + (newOrder ? fixedCostPerTrade : 0);
+        }
+        
+        private static Integer[] byDescending(int n, java.util.function.IntToDoubleFunction key) {
+            Integer[] order = new Integer[n];
+            double[] keys = new double[n];
+            for (int i = 0; i < n; i++) {
+                order[i] = i;
+                keys[i] = key.applyAsDouble(i);
+            }
+            Arrays.sort(order, (a, b) -> Double.compare(keys[b], keys[a]));
+            return order;
+        }
+        
+        // Sends the plan through the normal order path at current prices,
+        // sells first. Returns the trades the portfolio rejected (e.g. a buy
+        // that no longer fits because the price moved up).
+        public java.util.List<RebalanceTrade> execute(Portfolio portfolio, Map<String, Stock> market,
+                                                      RebalancePlan plan) {
+            java.util.List<RebalanceTrade> rejected = new ArrayList<>();
+            for (RebalanceTrade trade : plan.getTrades()) {
+                long price = market.get(trade.getSymbol()).getPriceMinor();
+                boolean ok = trade.isBuy()
+                    ? portfolio.buyStock(trade.getSymbol(), trade.getQuantity(), price)
+                    : portfolio.sellStock(trade.getSymbol(), -trade.getQuantity(), price);
+                if (!ok) rejected.add(trade);
+            }
+            return rejected;
+        }
+        
+        // Risk budgeting: find fully invested weights w where each symbol's
+        // share of variance, w_i * (Cov w)_i / w'Cov w, equals its budget.
+        // Solved by cyclical coordinate descent on the convex problem
+        // min 1/2 x'Cov x - sum b_i ln x_i (each step is a closed-form
+        // quadratic root), whose minimiser normalised to sum 1 is w. A window
+        // shorter than the number of symbols gives a singular sample
+        // covariance with no solution, so it is shrunk toward its diagonal
+        // by k / (k + samples) first.
+        static Map<String, Double> riskBudgetWeights(Map<String, Double> budget, CorrelationMatrix risk) {
+            String[] all = risk.getSymbols();
+            Map<String, Integer> position = new HashMap<>();
+            for (int i = 0; i < all.length; i++) position.put(all[i], i);
+            
+            java.util.List<String> names = new ArrayList<>();
+            java.util.List<Double> shares = new ArrayList<>();
+            double budgetTotal = 0;
+            for (Map.Entry<String, Double> entry : budget.entrySet()) {
+                if (!position.containsKey(entry.getKey())) {
+                    throw new IllegalArgumentException("Unknown symbol: " + entry.getKey());
+                }
+                if (!(entry.getValue() >= 0)) {
+                    throw new IllegalArgumentException("Negative risk budget for " + entry.getKey());
+                }
+                if (entry.getValue() > 0) {
+                    names.add(entry.getKey());
+                    shares.add(entry.getValue());
+                    budgetTotal += entry.getValue();
+                }
+            }
+            if (names.isEmpty()) {
+                throw new IllegalArgumentException("Risk budget is empty");
+            }
+            
+            int k = names.size();
+            double[][] fullCov = risk.getCovarianceMatrix();
+            double shrink = k / (double) (k + risk.getSampleCount());
+            double[][] cov = new double[k][k];
+            double[] b = new double[k];
+            double[] x = new double[k];
+            for (int a = 0; a < k; a++) {
+                int i = position.get(names.get(a));
+                for (int c = 0; c < k; c++) {
+                    cov[a][c] = (c == a ? 1.0 : 1.0 - shrink) * fullCov[i][position.get(names.get(c))];
+                }
+                if (!(cov[a][a] > 0)) {
+                    throw new IllegalStateException("Not enough price history to estimate risk for "
+                                                    + names.get(a));
+                }
+                b[a] = shares.get(a) / budgetTotal;
+                x[a] = Math.sqrt(b[a] / cov[a][a]);
+            }
+            
+            // marginal = Cov x, kept current as single coordinates move
+            double[] marginal = new double[k];
+            for (int a = 0; a < k; a++) {
+                for (int c = 0; c < k; c++) marginal[a] += cov[a][c] * x[c];
+            }
+            for (int sweep = 0; sweep < 1000; sweep++) {
+                double largestStep = 0;
+                for (int a = 0; a < k; a++) {
+                    double others = marginal[a] - cov[a][a] * x[a];
+                    double next = (-others + Math.sqrt(others * others + 4 * cov[a][a] * b[a])) / (2 * cov[a][a]);
+                    double delta = next - x[a];
+                    if (delta != 0) {
+                        for (int c = 0; c < k; c++) marginal[c] += cov[c][a] * delta;
+                        x[a] = next;
+                        largestStep = Math.max(largestStep, Math.abs(delta) / next);
+                    }
+                }
+                if (largestStep < 1e-10) break;
+            }
+            normalize(x);
+            
+            Map<String, Double> weights = new LinkedHashMap<>();
+            for (int a = 0; a < k; a++) weights.put(names.get(a), x[a]);
+            return weights;
+        }
+        
+        private static void normalize(double[] w) {
+            double sum = 0;
+            for (double x : w) sum += x;
+            for (int i = 0; i < w.length; i++) w[i] /= sum;
+        }
+    }
+
+    // ==================== SHARED QUOTE FEED ====================
+    
+    // Layout of the memory-mapped quote file shared with other local JVMs
+    // (see QuoteFeedReader). Little-endian, one 64-byte header then one
+    // 128-byte record per symbol (two cache lines, so neighbours never share
+    // a line). Each record is guarded by its own sequence counter: the writer
+    // makes it odd, writes the fields, then makes it even; readers retry
+    // until they see the same even value before and after reading.
+    //
+    //   header: 0 magic, 8 version, 12 recordCount, 16 recordSize,
+    //           24 writerStartMillis, 32 publishCount, 40 closed flag
+    //   record: 0 seq, 8 priceMinor, 16 changePercent, 24 volume,
+    //           32 publishNanos (System.nanoTime), 40 publishMillis,
+    //           48 symbol length, 49..63 symbol (ASCII)
+    static final class QuoteFeed {
+        private QuoteFeed() {}
+        
+        static final long MAGIC = 0x3130304445454651L; // "QFEED001"
+        static final int VERSION = 1;
+        static final int HEADER_SIZE = 64;
+        static final int RECORD_SIZE = 128;
+        static final int MAX_SYMBOL_LENGTH = 15;
+        
+        static final int H_MAGIC = 0;
+        static final int H_VERSION = 8;
+        static final int H_RECORD_COUNT = 12;
+        static final int H_RECORD_SIZE = 16;
+        static final int H_START_MILLIS = 24;
+        static final int H_PUBLISH_COUNT = 32;
+        static final int H_CLOSED = 40;
+        
+        static final int R_SEQ = 0;
+        static final int R_PRICE = 8;
+        static final int R_CHANGE = 16;
+        static final int R_VOLUME = 24;
+        static final int R_PUBLISH_NANOS = 32;
+        static final int R_PUBLISH_MILLIS = 40;
+        static final int R_SYMBOL = 48;
+        
+        // Atomic, ordered access to 8-byte-aligned longs in the mapping
+        static final VarHandle LONGS =
+            MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+        
+        // VarHandle buffer offsets are ints, which caps a feed at ~16M symbols
+        static int recordOffset(int index) {
+            return Math.addExact(HEADER_SIZE, Math.multiplyExact(index, RECORD_SIZE));
+        }
+        
+        static long fileSize(int recordCount) {
+            return recordOffset(recordCount);
+        }
+    }
+    
+    // Publishes every tick into the mapped file. Single writer: only the feed
+    // thread calls onTick. Nothing is allocated per tick.
+    static class QuoteFeedWriter implements TickListener, Closeable {
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final Map<String, Integer> indexBySymbol = new HashMap<>();
+        private long publishCount;
+        
+        QuoteFeedWriter(Path path, Collection<Stock> universe) throws IOException {
+            this.path = path;
+            int count = universe.size();
+            long size = QuoteFeed.fileSize(count);
+            // Never truncated: a reader still mapping an older, longer file
+            // would fault on access past the new end
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                       StandardOpenOption.WRITE);
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            
+            // Readers treat the file as unready until the magic is published last
+            QuoteFeed.LONGS.setVolatile(buffer, QuoteFeed.H_MAGIC, 0L);
+            buffer.putInt(QuoteFeed.H_VERSION, QuoteFeed.VERSION);
+            buffer.putInt(QuoteFeed.H_RECORD_COUNT, count);
+            buffer.putInt(QuoteFeed.H_RECORD_SIZE, QuoteFeed.RECORD_SIZE);
+            buffer.putLong(QuoteFeed.H_START_MILLIS, System.currentTimeMillis());
+            buffer.putLong(QuoteFeed.H_PUBLISH_COUNT, 0L);
+            buffer.putLong(QuoteFeed.H_CLOSED, 0L);
+            
+            int i = 0;
+            for (Stock stock : universe) {
+                byte[] symbol = stock.getSymbol().getBytes(java.nio.charset.StandardCharsets.US_ASCII);
+                if (symbol.length > QuoteFeed.MAX_SYMBOL_LENGTH) {
+                    throw new IllegalArgumentException("Symbol too long for quote feed: " + stock.getSymbol());
+                }
+                int offset = QuoteFeed.recordOffset(i);
+                buffer.putLong(offset + QuoteFeed.R_SEQ, 0L);
+                buffer.put(offset + QuoteFeed.R_SYMBOL, (byte) symbol.length);
+                buffer.put(offset + QuoteFeed.R_SYMBOL + 1, symbol);
+                indexBySymbol.put(stock.getSymbol(), i);
+                publish(i, stock);
+                i++;
+            }
+            QuoteFeed.LONGS.setRelease(buffer, QuoteFeed.H_MAGIC, QuoteFeed.MAGIC);
+        }
+        
+        @Override
+        public void onTick(Stock stock, double oldPrice) {
+            Integer index = indexBySymbol.get(stock.getSymbol());
+            if (index != null) {
+                publish(index, stock);
+            }
+        }
+        
+        @Override
+        public void onTickComplete() {
+            QuoteFeed.LONGS.setRelease(buffer, QuoteFeed.H_PUBLISH_COUNT, ++publishCount);
+        }
+        
+        private void publish(int index, Stock stock) {
+            int offset = QuoteFeed.recordOffset(index);
+            long seq = (long) QuoteFeed.LONGS.get(buffer, offset + QuoteFeed.R_SEQ);
+            QuoteFeed.LONGS.setOpaque(buffer, offset + QuoteFeed.R_SEQ, seq + 1);
+            VarHandle.storeStoreFence();
+            buffer.putLong(offset + QuoteFeed.R_PRICE, stock.getPriceMinor());
+            buffer.putDouble(offset + QuoteFeed.R_CHANGE, stock.getDailyChange());
+            buffer.putLong(offset + QuoteFeed.R_VOLUME, stock.getVolume());
+            buffer.putLong(offset + QuoteFeed.R_PUBLISH_MILLIS, System.currentTimeMillis());
+            buffer.putLong(offset + QuoteFeed.R_PUBLISH_NANOS, System.nanoTime());
+            QuoteFeed.LONGS.setRelease(buffer, offset + QuoteFeed.R_SEQ, seq + 2);
+        }
+        
+        public Path getPath() { return path; }
+        
+        // Flags the feed as stale for readers; the mapping itself is released by GC
+        @Override
+        public void close() throws IOException {
+            QuoteFeed.LONGS.setRelease(buffer, QuoteFeed.H_CLOSED, 1L);
+            channel.close();
+        }
+    }
+
+    // ==================== TICK SCHEDULING ====================
+    
+    // Fixed-rate tick clock on a ScheduledExecutorService. Each tick is
+    // scheduled against an absolute deadline (start + n * period), so
+    // scheduling jitter never accumulates into drift. If a tick runs past the
+    // next whole period, the missed ticks are counted and skipped instead of
+    // being replayed in a burst. Periods below a millisecond are supported.
+    static class TickScheduler {
+        private final long periodNanos;
+        private final Runnable task;
+        private final ScheduledExecutorService executor;
+        private final AtomicLong ticks = new AtomicLong();
+        private final AtomicLong overruns = new AtomicLong();
+        private final AtomicLong skippedTicks = new AtomicLong();
+        private volatile long maxLatenessNanos;
+        private volatile long lastTickNanos;
+        private long nextDeadline;
+        private volatile boolean running;
+        
+        TickScheduler(String name, long period, TimeUnit unit, Runnable task) {
+            this.periodNanos = Math.max(1, unit.toNanos(period));
+            this.task = task;
+            this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, name);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        
+        public void start() {
+            running = true;
+            nextDeadline = System.nanoTime();
+            executor.execute(this::fire);
+        }
+        
+        public void stop() {
+            running = false;
+            executor.shutdownNow();
+        }
+        
+        private void fire() {
+            if (!running) return;
+            long start = System.nanoTime();
+            long lateness = start - nextDeadline;
+            if (lateness > maxLatenessNanos) maxLatenessNanos = lateness;
+            
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                // A bad tick must not silently stop the clock
+                System.err.println("Tick failed: " + e);
+            }
+            ticks.incrementAndGet();
+            lastTickNanos = System.nanoTime() - start;
+            
+            nextDeadline += periodNanos;
+            long now = System.nanoTime();
+            long behind = now - nextDeadline;
+            if (behind >= periodNanos) {
+                long missed = behind / periodNanos;
+                overruns.incrementAndGet();
+                skippedTicks.addAndGet(missed);
+                nextDeadline += missed * periodNanos;
+            }
+            
+            if (running) {
+                executor.schedule(this::fire, Math.max(0, nextDeadline - now), TimeUnit.NANOSECONDS);
+            }
+        }
+        
+        public long getPeriodNanos() { return periodNanos; }
+        public long getTicks() { return ticks.get(); }
+        public long getOverruns() { return overruns.get(); }
+        public long getSkippedTicks() { return skippedTicks.get(); }
+        public long getMaxLatenessNanos() { return maxLatenessNanos; }
+        public long getLastTickNanos() { return lastTickNanos; }
+        
+        public String getStatus() {
+            return String.format("%.0f ticks/s, %d overruns (%d ticks skipped), max late %.2f ms",
+                1e9 / periodNanos, overruns.get(), skippedTicks.get(), maxLatenessNanos / 1e6);
+        }
+    }
+
+    static class MarketData {
+        private Map<String, Stock> stocks;
+        private volatile boolean marketOpen;
+        private TickScheduler scheduler;
+        private PriceSimulator simulator;
+        private MarketIndices indices;
+        private TopMovers topMovers;
+        private CandleStore candles;
+        private final Map<Integer, CorrelationMatrix> correlations = new TreeMap<>();
+        private QuoteFeedWriter quoteFeed;
+        private final java.util.List<TickListener> tickListeners = new CopyOnWriteArrayList<>();
+        
+        // -Dmarket.model=gbm|jump|regime and -Dmarket.seed=<long> replay a run exactly
+        public MarketData() {
+            this(PriceModel.forName(System.getProperty("market.model", "gbm")),
+                 Long.getLong("market.seed", System.nanoTime()));
+        }
+        
+        public MarketData(PriceModel model, long seed) {
+            stocks = new LinkedHashMap<>();
+            marketOpen = true;
+            initializeStocks();
+            simulator = new PriceSimulator(stocks.values(), model, seed);
+            indices = new MarketIndices(stocks.values());
+            addTickListener(indices);
+            topMovers = new TopMovers(stocks.values());
+            addTickListener(topMovers);
+            candles = new CandleStore(stocks.values());
+            addTickListener(candles);
+            // -Dmarket.corrWindows=60,600 sets the rolling windows, in ticks
+            for (String window : System.getProperty("market.corrWindows", "60,600").split(",")) {
+                addCorrelationWindow(Integer.parseInt(window.trim()));
+            }
+        }
+        
+        // Mirrors every tick into a memory-mapped file for QuoteFeedReader in
+        // other processes (the apps do this when -Dmarket.quoteFeed is set)
+        public synchronized QuoteFeedWriter publishQuotes(Path path) throws IOException {
+            if (quoteFeed != null) {
+                removeTickListener(quoteFeed);
+                quoteFeed.close();
+            }
+            quoteFeed = new QuoteFeedWriter(path, stocks.values());
+            addTickListener(quoteFeed);
+            return quoteFeed;
+        }
+        
+        public synchronized CorrelationMatrix addCorrelationWindow(int window) {
+            CorrelationMatrix matrix = correlations.get(window);
+            if (matrix == null) {
+                matrix = new CorrelationMatrix(stocks.values(), window);
+                correlations.put(window, matrix);
+                addTickListener(matrix);
+            }
+            return matrix;
+        }
+        
+        public void addTickListener(TickListener listener) {
+            tickListeners.add(listener);
+        }
+        
+        public void removeTickListener(TickListener listener) {
+            tickListeners.remove(listener);
+        }
+        
+        private void initializeStocks() {
+            stocks.put("AAPL", new Stock("AAPL", "Apple Inc.", 175.25, "Technology", 2.7e12));
+            stocks.put("GOOGL", new Stock("GOOGL", "Alphabet Inc.", 138.75, "Technology", 1.7e12));
+            stocks.put("MSFT", new Stock("MSFT", "Microsoft Corp.", 330.45, "Technology", 2.5e12));
+            stocks.put("TSLA", new Stock("TSLA", "Tesla Inc.", 210.30, "Automotive", 650e9));
+            stocks.put("AMZN", new Stock("AMZN", "Amazon.com Inc.", 145.80, "E-commerce", 1.5e12));
+            stocks.put("JPM", new Stock("JPM", "JPMorgan Chase", 155.60, "Finance", 450e9));
+            stocks.put("NVDA", new Stock("NVDA", "NVIDIA Corp.", 485.25, "Technology", 1.2e12));
+            stocks.put("META", new Stock("META", "Meta Platforms", 320.10, "Technology", 820e9));
+            stocks.put("V", new Stock("V", "Visa Inc.", 240.75, "Finance", 500e9));
+            stocks.put("JNJ", new Stock("JNJ", "Johnson & Johnson", 155.90, "Healthcare", 380e9));
+        }
+        
+        // -Dmarket.tickMicros sets the tick period (default 2 s); 1000 = 1000 ticks/s
+        public void startMarketUpdates(Runnable updateCallback) {
+            startMarketUpdates(updateCallback, Long.getLong("market.tickMicros", 2_000_000L),
+                               TimeUnit.MICROSECONDS);
+        }
+        
+        public void startMarketUpdates(Runnable updateCallback, long periodMs) {
+            startMarketUpdates(updateCallback, periodMs, TimeUnit.MILLISECONDS);
+        }
+        
+        // The callback runs on the feed thread after every tick and must stay
+        // cheap; UIs should only flag new data and repaint on their own clock.
+        public void startMarketUpdates(Runnable updateCallback, long period, TimeUnit unit) {
+            stopMarketUpdates();
+            simulator.setTickPeriod(unit.toNanos(period));
+            scheduler = new TickScheduler("market-feed", period, unit, () -> {
+                if (marketOpen) {
+                    updateMarket();
+                    updateCallback.run();
+                }
+            });
+            scheduler.start();
+        }
+        
+        public void stopMarketUpdates() {
+            if (scheduler != null) {
+                scheduler.stop();
+                scheduler = null;
+            }
+        }
+        
+        public TickScheduler getScheduler() { return scheduler; }
+        
+        private void updateMarket() {
+            simulator.tick(this::fireTick);
+            for (TickListener listener : tickListeners) {
+                listener.onTickComplete();
+            }
+        }
+        
+        private void fireTick(Stock stock, double oldPrice) {
+            for (TickListener listener : tickListeners) {
+                listener.onTick(stock, oldPrice);
+            }
+        }
+        
+        public boolean toggleMarket() {
+            marketOpen = !marketOpen;
+            return marketOpen;
+        }
+        
+        // No UI here so the headless daemon can use it; callers report errors
+        public void saveMarketData() throws IOException {
+            try (PrintWriter writer = new PrintWriter("market_data.csv")) {
+                writer.println("Symbol,Name,Price,Change%,Volume,Sector,MarketCap");
+                for (Stock stock : stocks.values()) {
+                    writer.printf("%s,%s,%.2f,%.2f,%d,%s,%.0f%n",
+                        stock.getSymbol(), stock.getName(), stock.getCurrentPrice(),
+                        stock.getDailyChange(), stock.getVolume(), 
+                        stock.getSector(), stock.getMarketCap());
+                }
+            }
+        }
+        
+        public Map<String, Stock> getStocks() { return stocks; }
+        public PriceSimulator getSimulator() { return simulator; }
+        public MarketIndices getIndices() { return indices; }
+        public TopMovers getTopMovers() { return topMovers; }
+        public CandleStore getCandles() { return candles; }
+        public synchronized QuoteFeedWriter getQuoteFeed() { return quoteFeed; }
+        public synchronized CorrelationMatrix getCorrelations(int window) { return correlations.get(window); }
+        public synchronized java.util.List<Integer> getCorrelationWindows() { return new ArrayList<>(correlations.keySet()); }
+        public boolean isMarketOpen() { return marketOpen; }
+        public java.util.List<Stock> getAllStocks() { return new ArrayList<>(stocks.values()); }
+    }
+}
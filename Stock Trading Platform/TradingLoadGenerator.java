@@ -0,0 +1,311 @@
+// TradingLoadGenerator.java - Synthetic multi-trader load test for the trading core
+//
+// Runs thousands of simulated traders against Portfolio.buyStock/sellStock
+// with a live MarketData feed and no Swing UI, then reports throughput,
+// latency percentiles, GC activity, persistence backlog and order admission.
+//
+//   java TradingLoadGenerator --traders 5000 --accounts 500 --duration 30 \
+//        --threads 8 --mix 45,45,10 --think-ms 1-20 --tick-ms 100 --durability batched \
+//        [--account-rate 50 --account-burst 10 --global-rate 20000 --global-burst 500 --max-delay-ms 5]
+import java.io.File;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+public class TradingLoadGenerator {
+
+    // Log-linear histogram: 64 power-of-two ranges split into 16 linear sub-buckets.
+    // Recording is a single atomic increment, so traders never contend on a lock.
+    static class LatencyHistogram {
+        private static final int SUB_BUCKETS = 16;
+        private final AtomicLongArray counts = new AtomicLongArray(64 * SUB_BUCKETS);
+        private final LongAdder total = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long nanos) {
+            if (nanos < 1) nanos = 1;
+            int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+            int sub = exponent < 4
+                ? (int) nanos
+                : (int) ((nanos >>> (exponent - 4)) & (SUB_BUCKETS - 1));
+            counts.incrementAndGet(exponent * SUB_BUCKETS + sub);
+            total.increment();
+            long seen;
+            while (nanos > (seen = max.get()) && !max.compareAndSet(seen, nanos)) {
+                // retry
+            }
+        }
+
+        // Upper edge of the bucket holding the given percentile
+        long percentile(double p) {
+            long n = total.sum();
+            if (n == 0) return 0;
+            long rank = (long) Math.ceil(p / 100.0 * n);
+            long seen = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                seen += counts.get(i);
+                if (seen >= rank) {
+                    int exponent = i / SUB_BUCKETS;
+                    int sub = i % SUB_BUCKETS;
+                    if (exponent < 4) return sub;
+                    long step = 1L << (exponent - 4);
+                    return Math.min(max.get(), (SUB_BUCKETS + sub + 1) * step - 1);
+                }
+            }
+            return max.get();
+        }
+
+        long count() { return total.sum(); }
+        long max() { return max.get(); }
+    }
+
+    static class Config {
+        int traders = 2000;
+        int accounts = 0; // 0 = one account per trader
+        int threads = Runtime.getRuntime().availableProcessors();
+        int durationSeconds = 30;
+        int buyPercent = 45;
+        int sellPercent = 45;
+        int minThinkMs = 1;
+        int maxThinkMs = 20;
+        long tickMs = 100;
+        long seed = 42;
+        String durability = "batched";
+        long flushIntervalMs = 1000;
+        String dataDir = "loadtest-data";
+        double accountRate = 0; // orders/s per account, 0 = unlimited
+        int accountBurst = 10;
+        double globalRate = 0;
+        int globalBurst = 100;
+        long maxDelayMs = 0;
+
+        static Config parse(String[] args) {
+            Config config = new Config();
+            for (int i = 0; i + 1 < args.length; i += 2) {
+                String key = args[i];
+                String value = args[i + 1];
+                switch (key) {
+                    case "--traders": config.traders = Integer.parseInt(value); break;
+                    case "--accounts": config.accounts = Integer.parseInt(value); break;
+                    case "--threads": config.threads = Integer.parseInt(value); break;
+                    case "--duration": config.durationSeconds = Integer.parseInt(value); break;
+                    case "--tick-ms": config.tickMs = Long.parseLong(value); break;
+                    case "--seed": config.seed = Long.parseLong(value); break;
+                    case "--durability": config.durability = value; break;
+                    case "--flush-ms": config.flushIntervalMs = Long.parseLong(value); break;
+                    case "--data-dir": config.dataDir = value; break;
+                    case "--account-rate": config.accountRate = Double.parseDouble(value); break;
+                    case "--account-burst": config.accountBurst = Integer.parseInt(value); break;
+                    case "--global-rate": config.globalRate = Double.parseDouble(value); break;
+                    case "--global-burst": config.globalBurst = Integer.parseInt(value); break;
+                    case "--max-delay-ms": config.maxDelayMs = Long.parseLong(value); break;
+                    case "--mix": {
+                        // buy,sell,quote percentages
+                        String[] parts = value.split(",");
+                        config.buyPercent = Integer.parseInt(parts[0].trim());
+                        config.sellPercent = Integer.parseInt(parts[1].trim());
+                        break;
+                    }
+                    case "--think-ms": {
+                        String[] parts = value.split("-");
+                        config.minThinkMs = Integer.parseInt(parts[0].trim());
+                        config.maxThinkMs = Integer.parseInt(parts[parts.length - 1].trim());
+                        break;
+                    }
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + key);
+                }
+            }
+            if (config.accounts <= 0 || config.accounts > config.traders) {
+                config.accounts = config.traders;
+            }
+            return config;
+        }
+    }
+
+    private final Config config;
+    private final TradingCore.MarketData marketData;
+    private final TradingCore.PersistenceWorker persistence;
+    private final TradingCore.AdmissionControl admission;
+    private final TradingCore.Portfolio[] accounts;
+    private final TradingCore.Stock[] universe;
+    private final ScheduledExecutorService traderPool;
+
+    private final LatencyHistogram buyLatency = new LatencyHistogram();
+    private final LatencyHistogram sellLatency = new LatencyHistogram();
+    private final LongAdder quotes = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final AtomicLong maxBacklog = new AtomicLong();
+    private volatile boolean running = true;
+
+    TradingLoadGenerator(Config config) {
+        this.config = config;
+        this.marketData = new TradingCore.MarketData(
+            TradingCore.PriceModel.forName("gbm"), config.seed);
+        this.universe = marketData.getAllStocks().toArray(new TradingCore.Stock[0]);
+        this.persistence = new TradingCore.PersistenceWorker(
+            TradingCore.PersistenceWorker.DurabilityMode.valueOf(config.durability.toUpperCase()),
+            config.flushIntervalMs);
+        this.admission = new TradingCore.AdmissionControl(config.accountRate, config.accountBurst,
+            config.globalRate, config.globalBurst, config.maxDelayMs);
+
+        new File(config.dataDir).mkdirs();
+        this.accounts = new TradingCore.Portfolio[config.accounts];
+        for (int i = 0; i < accounts.length; i++) {
+            accounts[i] = new TradingCore.Portfolio("trader-" + i, TradingCore.Money.of(1_000_000));
+            accounts[i].setDataFile(config.dataDir + File.separator + "account-" + i + ".properties");
+            accounts[i].setPersistence(persistence);
+            accounts[i].setAdmission(admission);
+        }
+
+        AtomicInteger threadId = new AtomicInteger();
+        this.traderPool = Executors.newScheduledThreadPool(config.threads, r -> {
+            Thread t = new Thread(r, "trader-" + threadId.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // One simulated trader: act, then think, then reschedule itself
+    private class Trader implements Runnable {
+        private final TradingCore.Portfolio account;
+        private final SplittableRandom random;
+
+        Trader(TradingCore.Portfolio account, long seed) {
+            this.account = account;
+            this.random = new SplittableRandom(seed);
+        }
+
+        @Override
+        public void run() {
+            if (!running) return;
+
+            TradingCore.Stock stock = universe[random.nextInt(universe.length)];
+            int roll = random.nextInt(100);
+            int quantity = random.nextInt(10) + 1;
+
+            if (roll < config.buyPercent) {
+                long start = System.nanoTime();
+                boolean ok = account.buyStock(stock.getSymbol(), quantity, stock.getPriceMinor());
+                buyLatency.record(System.nanoTime() - start);
+                if (!ok) rejected.increment();
+            } else if (roll < config.buyPercent + config.sellPercent) {
+                int owned = account.getQuantity(stock.getSymbol());
+                long start = System.nanoTime();
+                boolean ok = account.sellStock(stock.getSymbol(), Math.max(1, Math.min(owned, quantity)),
+                                               stock.getPriceMinor());
+                sellLatency.record(System.nanoTime() - start);
+                if (!ok) rejected.increment();
+            } else {
+                stock.getPriceMinor();
+                quotes.increment();
+            }
+
+            int think = config.minThinkMs + random.nextInt(config.maxThinkMs - config.minThinkMs + 1);
+            traderPool.schedule(this, think, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    void run() throws InterruptedException {
+        System.out.printf("Load test: %d traders, %d accounts, %d threads, %ds, mix %d/%d/%d, think %d-%dms, " +
+                          "tick %dms, durability %s%n",
+            config.traders, config.accounts, config.threads, config.durationSeconds,
+            config.buyPercent, config.sellPercent, 100 - config.buyPercent - config.sellPercent,
+            config.minThinkMs, config.maxThinkMs, config.tickMs, persistence.getMode());
+
+        marketData.startMarketUpdates(() -> { }, config.tickMs);
+
+        GcSnapshot gcStart = GcSnapshot.take();
+        long startNanos = System.nanoTime();
+        SplittableRandom seeds = new SplittableRandom(config.seed);
+        for (int i = 0; i < config.traders; i++) {
+            Trader trader = new Trader(accounts[i % accounts.length], seeds.nextLong());
+            traderPool.schedule(trader, seeds.nextInt(config.maxThinkMs + 1), TimeUnit.MILLISECONDS);
+        }
+
+        long previousOps = 0;
+        long previousShed = 0;
+        GcSnapshot gcPrevious = gcStart;
+        for (int second = 1; second <= config.durationSeconds; second++) {
+            Thread.sleep(1000);
+            long ops = buyLatency.count() + sellLatency.count();
+            long backlog = persistence.getPendingChanges();
+            maxBacklog.accumulateAndGet(backlog, Math::max);
+            GcSnapshot gcNow = GcSnapshot.take();
+            long shed = admission.getShedByAccount() + admission.getShedByGlobal();
+            System.out.printf("[%3ds] %,9d orders/s  shed %,7d  backlog %,7d  gc %d (%d ms)%n",
+                second, ops - previousOps, shed - previousShed, backlog,
+                gcNow.count - gcPrevious.count, gcNow.timeMs - gcPrevious.timeMs);
+            previousOps = ops;
+            previousShed = shed;
+            gcPrevious = gcNow;
+        }
+
+        running = false;
+        double elapsed = (System.nanoTime() - startNanos) / 1e9;
+        traderPool.shutdown();
+        traderPool.awaitTermination(5, TimeUnit.SECONDS);
+        marketData.stopMarketUpdates();
+        GcSnapshot gcEnd = GcSnapshot.take();
+
+        long backlogAtStop = persistence.getPendingChanges();
+        long drainStart = System.nanoTime();
+        persistence.shutdown();
+        double drainMs = (System.nanoTime() - drainStart) / 1e6;
+
+        long orders = buyLatency.count() + sellLatency.count();
+        System.out.println();
+        System.out.printf("Orders:      %,d (%,.0f/s), quotes %,d, rejected %,d%n",
+            orders, orders / elapsed, quotes.sum(), rejected.sum());
+        printLatency("Buy", buyLatency);
+        printLatency("Sell", sellLatency);
+        if (admission.isEnabled()) {
+            System.out.println("Admission:   " + admission.getStatus());
+        }
+        System.out.printf("GC:          %d collections, %d ms total (%.2f%% of wall time)%n",
+            gcEnd.count - gcStart.count, gcEnd.timeMs - gcStart.timeMs,
+            (gcEnd.timeMs - gcStart.timeMs) / (elapsed * 10.0));
+        System.out.printf("Persistence: %d flushes, max backlog %,d changes, %,d at stop, drained in %.1f ms%n",
+            persistence.getFlushCount(), maxBacklog.get(), backlogAtStop, drainMs);
+    }
+
+    private static void printLatency(String label, LatencyHistogram histogram) {
+        System.out.printf("%-12s p50 %s  p90 %s  p99 %s  p99.9 %s  max %s%n", label + ":",
+            formatNanos(histogram.percentile(50)), formatNanos(histogram.percentile(90)),
+            formatNanos(histogram.percentile(99)), formatNanos(histogram.percentile(99.9)),
+            formatNanos(histogram.max()));
+    }
+
+    private static String formatNanos(long nanos) {
+        if (nanos < 10_000) return nanos + "ns";
+        if (nanos < 10_000_000) return String.format("%.1fus", nanos / 1e3);
+        return String.format("%.1fms", nanos / 1e6);
+    }
+
+    static class GcSnapshot {
+        final long count;
+        final long timeMs;
+
+        GcSnapshot(long count, long timeMs) {
+            this.count = count;
+            this.timeMs = timeMs;
+        }
+
+        static GcSnapshot take() {
+            long count = 0;
+            long time = 0;
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                count += Math.max(0, gc.getCollectionCount());
+                time += Math.max(0, gc.getCollectionTime());
+            }
+            return new GcSnapshot(count, time);
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        System.setProperty("java.awt.headless", "true");
+        new TradingLoadGenerator(Config.parse(args)).run();
+    }
+}